@@ -0,0 +1,67 @@
+package benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import math.CameraModel;
+
+/**
+ * Compares finding the camera-based yaw and pitch of a sighting center with
+ * Math.atan() against the per-pixel lookup tables. The tables' error bound is
+ * printed during setup so accuracy can be read next to the speedup.
+ * 
+ * @author Jeff
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class AngleLookupBenchmark {
+	private static final int INPUTS = 1024; // must be a power of two
+
+	@Param({ "1", "4" })
+	public int subdivisions;
+
+	private CameraModel exact, table;
+	private double[] xs = new double[INPUTS], ys = new double[INPUTS];
+	private int index;
+
+	@Setup
+	public void setup() {
+		exact = new CameraModel(54.0 * Math.PI / 180.0, 53.13 * Math.PI / 180.0, SyntheticContours.FRAME_WIDTH,
+				SyntheticContours.FRAME_HEIGHT, 12, 7.28125, 0, 0, 0);
+		table = exact.withLookupTables(subdivisions);
+		System.out.println("Lookup table max error with " + subdivisions + " subdivisions: "
+				+ table.getLookupTableError() + " rad");
+		Random random = new Random(1086);
+		for (int i = 0; i < INPUTS; i++) {
+			xs[i] = random.nextDouble() * SyntheticContours.FRAME_WIDTH;
+			ys[i] = random.nextDouble() * SyntheticContours.FRAME_HEIGHT;
+		}
+	}
+
+	private int next() {
+		return index = (index + 1) & (INPUTS - 1);
+	}
+
+	@Benchmark
+	public double exactAngles() {
+		int i = next();
+		return exact.getXAngle(xs[i]) + exact.getYAngle(ys[i]);
+	}
+
+	@Benchmark
+	public double lookupAngles() {
+		int i = next();
+		return table.getXAngle(xs[i]) + table.getYAngle(ys[i]);
+	}
+}
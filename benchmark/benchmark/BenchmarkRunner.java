@@ -0,0 +1,27 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmark suite. Reports throughput (ops/s) along with the GC
+ * profiler's gc.alloc.rate.norm, the number of bytes allocated per operation.
+ * <br/>
+ * Pass a regular expression as the first argument to run only the matching
+ * benchmarks, for example "SightingBenchmark.distanceTo".
+ * 
+ * @author Jeff
+ *
+ */
+public class BenchmarkRunner {
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(args.length > 0 ? args[0] : BenchmarkRunner.class.getPackage().getName() + ".*")
+				.mode(Mode.Throughput).addProfiler(GCProfiler.class).forks(1).build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,71 @@
+package benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import math.CameraMath;
+
+/**
+ * Measures the per-call cost of the CameraMath functions used for every
+ * sighting of every frame. Inputs are cycled through a fixed table so the JIT
+ * can't constant-fold them.
+ * 
+ * @author Jeff
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CameraMathBenchmark {
+	private static final int INPUTS = 1024; // must be a power of two
+	private static final double HFOV = 54.0 * Math.PI / 180.0, VFOV = 53.13 * Math.PI / 180.0;
+
+	private double[] xs = new double[INPUTS], ys = new double[INPUTS], pitches = new double[INPUTS],
+			yaws = new double[INPUTS], distances = new double[INPUTS];
+	private int index;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(1086);
+		for (int i = 0; i < INPUTS; i++) {
+			xs[i] = random.nextDouble() * SyntheticContours.FRAME_WIDTH;
+			ys[i] = random.nextDouble() * SyntheticContours.FRAME_HEIGHT;
+			pitches[i] = CameraMath.getYAngle(ys[i], SyntheticContours.FRAME_HEIGHT, VFOV);
+			yaws[i] = CameraMath.getXAngle(xs[i], SyntheticContours.FRAME_WIDTH, HFOV);
+			distances[i] = 20 + random.nextDouble() * 200;
+		}
+	}
+
+	private int next() {
+		return index = (index + 1) & (INPUTS - 1);
+	}
+
+	@Benchmark
+	public double getXAngle() {
+		return CameraMath.getXAngle(xs[next()], SyntheticContours.FRAME_WIDTH, HFOV);
+	}
+
+	@Benchmark
+	public double getYAngle() {
+		return CameraMath.getYAngle(ys[next()], SyntheticContours.FRAME_HEIGHT, VFOV);
+	}
+
+	@Benchmark
+	public double calculateDistance() {
+		return CameraMath.calculateDistance(pitches[next()], 0.1, 28.75, 7.28125);
+	}
+
+	@Benchmark
+	public Object calcSightingCoords() {
+		int i = next();
+		return CameraMath.calcSightingCoords(distances[i], yaws[i], 12, 0, Math.PI / 12);
+	}
+}
@@ -0,0 +1,46 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import example.RocketPipeline;
+
+/**
+ * Measures the example GRIP pipeline on a synthetic 320x240 frame with a given
+ * number of target-colored blobs in it.
+ * 
+ * @author Jeff
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RocketPipelineBenchmark {
+	@Param({ "5", "50", "500" })
+	public int blobs;
+
+	private RocketPipeline pipeline;
+	private Mat frame;
+
+	@Setup
+	public void setup() {
+		frame = SyntheticContours.frame(1086, blobs);
+		pipeline = new RocketPipeline();
+	}
+
+	@Benchmark
+	public ArrayList<MatOfPoint> process() {
+		return pipeline.process(frame);
+	}
+}
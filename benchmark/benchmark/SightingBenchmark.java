@@ -0,0 +1,80 @@
+package benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.MatOfPoint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import processing.Sighting;
+
+/**
+ * Measures building sightings from contours, and the two operations that
+ * relate sightings to each other: distanceTo() and addSighting().
+ * 
+ * @author Jeff
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SightingBenchmark {
+	@Param({ "4", "50", "500", "2000" })
+	public int points;
+
+	private MatOfPoint contourA, contourB;
+	private Sighting sightingA, sightingB;
+
+	/**
+	 * The sighting addSighting() merges into. Kept apart from the benchmark's
+	 * own state so that only addSighting() pays for replacing it before every
+	 * invocation.
+	 */
+	@State(Scope.Thread)
+	public static class MergeTarget {
+		private Sighting sighting;
+
+		@Setup(Level.Invocation)
+		public void fresh(SightingBenchmark benchmark) {
+			sighting = new Sighting(benchmark.contourA);
+		}
+	}
+
+	@Setup
+	public void setup() {
+		Random random = new Random(1086);
+		contourA = SyntheticContours.contour(random, points);
+		contourB = SyntheticContours.contour(random, points);
+		sightingA = new Sighting(contourA);
+		sightingB = new Sighting(contourB);
+	}
+
+	@Benchmark
+	public Sighting construct() {
+		return new Sighting(contourA);
+	}
+
+	@Benchmark
+	public double distanceTo() {
+		return sightingA.distanceTo(sightingB);
+	}
+
+	@Benchmark
+	public double distanceToWithLimit() {
+		return sightingA.distanceTo(sightingB, 10);
+	}
+
+	@Benchmark
+	public Sighting addSighting(MergeTarget target) {
+		target.sighting.addSighting(sightingB);
+		return target.sighting;
+	}
+}
@@ -0,0 +1,54 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.MatOfPoint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import processing.Sighting;
+import processing.SightingClusterer;
+
+/**
+ * Measures combining nearby sightings on frames with more and more clutter.
+ * 
+ * @author Jeff
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SightingClustererBenchmark {
+	@Param({ "5", "50", "500" })
+	public int contours;
+
+	@Param({ "2", "10" })
+	public double mergeDistance;
+
+	private final SightingClusterer clusterer = new SightingClusterer();
+	private ArrayList<Sighting> sightings, working;
+
+	@Setup
+	public void setup() {
+		sightings = new ArrayList<>(contours);
+		for (MatOfPoint contour : SyntheticContours.contours(1086, contours, 20)) {
+			sightings.add(new Sighting(contour));
+		}
+		working = new ArrayList<>(contours);
+	}
+
+	@Benchmark
+	public ArrayList<Sighting> cluster() {
+		working.clear();
+		working.addAll(sightings);
+		clusterer.cluster(working, mergeDistance);
+		return working;
+	}
+}
@@ -0,0 +1,57 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.MatOfPoint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import cameras.ManualCVCamera;
+import processing.Sighting;
+import processing.SightingContainer;
+import processing.VisionTarget;
+
+/**
+ * Measures the per-frame math SightingContainer runs on every sighting of a
+ * target.
+ * 
+ * @author Jeff
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SightingContainerBenchmark {
+	@Param({ "5", "50", "500" })
+	public int contours;
+
+	@Param({ "4", "100", "2000" })
+	public int points;
+
+	private SightingContainer container;
+	private ArrayList<Sighting> sightings;
+
+	@Setup
+	public void setup() {
+		ManualCVCamera camera = new ManualCVCamera(60, 53.13 * Math.PI / 180.0, 54.0 * Math.PI / 180.0,
+				SyntheticContours.FRAME_WIDTH, SyntheticContours.FRAME_HEIGHT, 12, 7.28125, 0, 0, 0);
+		container = new SightingContainer(camera, new VisionTarget("Rocket", 28.75, 1));
+		sightings = new ArrayList<>(contours);
+		for (MatOfPoint contour : SyntheticContours.contours(1086, contours, points)) {
+			sightings.add(new Sighting(contour));
+		}
+	}
+
+	@Benchmark
+	public SightingContainer updateObjects() {
+		container.updateObjects(sightings);
+		return container;
+	}
+}
@@ -0,0 +1,61 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.Core;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import cameras.FrameSnapshot;
+import cameras.SyntheticCVCamera;
+import example.RocketPipeline;
+import processing.VisionTarget;
+
+/**
+ * Measures whole frames, from drawing to publishing, on a synthetic 320x240
+ * camera running the example GRIP pipeline, with a given number of targets and
+ * clutter shapes in view.
+ * 
+ * @author Jeff
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SyntheticCameraBenchmark {
+	static {
+		System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+	}
+
+	@Param({ "1", "4", "16" })
+	public int targets;
+
+	@Param({ "0", "50" })
+	public int clutter;
+
+	private SyntheticCVCamera camera;
+
+	@Setup
+	public void setup() {
+		camera = new SyntheticCVCamera(30, Math.toRadians(45), Math.toRadians(60), 320, 240, 0, 20, 0, 0, 0, 1086);
+		VisionTarget target = new VisionTarget("Rocket", 28.75, 2);
+		RocketPipeline pipeline = new RocketPipeline();
+		pipeline.addSupportedTarget(target);
+		camera.addPipeline(pipeline);
+		camera.scatter(target, 14, targets, 40, 200);
+		camera.setClutter(clutter, 3, 12);
+		camera.setVertexNoise(0.5);
+	}
+
+	@Benchmark
+	public FrameSnapshot frame() {
+		camera.updateSightings();
+		return camera.getLatestFrame();
+	}
+}
@@ -0,0 +1,85 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Generates reproducible, synthetic contours and frames for the benchmarks.
+ * Every contour is a closed blob made by walking around an ellipse and
+ * jittering the radius, so the point count can be set exactly while the shape
+ * still looks like something a pipeline would output.
+ * 
+ * @author Jeff
+ *
+ */
+public class SyntheticContours {
+	public static final int FRAME_WIDTH = 320, FRAME_HEIGHT = 240;
+
+	static {
+		System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+	}
+
+	/**
+	 * Creates a single contour with exactly the given number of points
+	 * 
+	 * @param random     the source of randomness. Pass a seeded Random for
+	 *                   repeatable results
+	 * @param pointCount the number of points in the contour (at least 3)
+	 * @return the contour, with every point inside a 320x240 frame
+	 */
+	public static MatOfPoint contour(Random random, int pointCount) {
+		double radiusX = 4 + random.nextDouble() * 30;
+		double radiusY = 4 + random.nextDouble() * 30;
+		double centerX = radiusX + random.nextDouble() * (FRAME_WIDTH - 2 * radiusX - 1);
+		double centerY = radiusY + random.nextDouble() * (FRAME_HEIGHT - 2 * radiusY - 1);
+		Point[] points = new Point[pointCount];
+		for (int i = 0; i < pointCount; i++) {
+			double theta = 2.0 * Math.PI * i / pointCount;
+			double jitter = 0.85 + random.nextDouble() * 0.15;
+			points[i] = new Point(Math.round(centerX + Math.cos(theta) * radiusX * jitter),
+					Math.round(centerY + Math.sin(theta) * radiusY * jitter));
+		}
+		return new MatOfPoint(points);
+	}
+
+	/**
+	 * Creates a list of contours, as a pipeline would return them
+	 * 
+	 * @param seed         the random seed, so that runs are comparable
+	 * @param contourCount the number of contours to make
+	 * @param pointCount   the number of points in each contour
+	 * @return the contours
+	 */
+	public static ArrayList<MatOfPoint> contours(long seed, int contourCount, int pointCount) {
+		Random random = new Random(seed);
+		ArrayList<MatOfPoint> contours = new ArrayList<>(contourCount);
+		for (int i = 0; i < contourCount; i++) {
+			contours.add(contour(random, pointCount));
+		}
+		return contours;
+	}
+
+	/**
+	 * Renders filled green blobs onto a black 320x240 BGR frame. The green is
+	 * chosen to fall inside RocketPipeline's HSV threshold.
+	 * 
+	 * @param seed      the random seed, so that runs are comparable
+	 * @param blobCount the number of blobs to draw
+	 * @return the rendered frame
+	 */
+	public static Mat frame(long seed, int blobCount) {
+		Mat frame = new Mat(FRAME_HEIGHT, FRAME_WIDTH, CvType.CV_8UC3, new Scalar(0, 0, 0));
+		List<MatOfPoint> blobs = contours(seed, blobCount, 24);
+		Imgproc.fillPoly(frame, blobs, new Scalar(0, 255, 0));
+		return frame;
+	}
+}
@@ -1,24 +1,25 @@
 package cameras;
 
 import static java.lang.Thread.interrupted;
-import static java.lang.Thread.sleep;
-
-import java.util.ArrayList;
 
 import org.opencv.core.Mat;
-import org.opencv.core.MatOfPoint;
 
-import edu.wpi.cscore.CvSink;
+import cameras.FrameScheduler.OverrunPolicy;
 import edu.wpi.cscore.VideoSource;
 import edu.wpi.first.wpilibj.CameraServer;
 import processing.Pipeline;
-import processing.Sighting;
-import processing.SightingContainer;
+import processing.PipelineFactory;
 
 /**
  * A camera that automatically records video and processes frames at a speed
  * dictated by its refresh rate. Once the initializeCamera() method is run, this
- * processing will be run automatically in a separate thread. <br/>
+ * processing will be run automatically in a separate thread. Frames are started
+ * on a fixed schedule, so time spent processing does not lower the frame rate
+ * as long as each frame fits in one period (see setOverrunPolicy()). <br/>
+ * By default each frame is grabbed and then processed on the same thread. In
+ * CaptureMode.PIPELINED, grabbing and processing run on separate threads so
+ * that the next frame is captured while the current one is processed (see
+ * setCaptureMode()). <br/>
  * Processing a frame entails running it through any pipelines that have been
  * added to this camera and storing pipeline outputs as sightings of their
  * supported targets. After a frame has been processed, the getSightings()
@@ -30,7 +31,29 @@ import processing.SightingContainer;
  */
 
 public class AutomaticCVCamera extends CVCamera {
-	ArrayList<Pipeline> pipelines = new ArrayList<>();
+	/**
+	 * How grabbing and processing frames are arranged
+	 */
+	public enum CaptureMode {
+		/**
+		 * One thread grabs a frame, processes it, then grabs the next one.
+		 */
+		SEQUENTIAL,
+		/**
+		 * A capture thread grabs frames into a ring of preallocated buffers while a
+		 * processing thread always processes the newest complete frame. Frames that
+		 * are replaced before processing gets to them are dropped and counted (see
+		 * getDroppedFrameCount()).
+		 */
+		PIPELINED
+	}
+
+	private static final int RING_SIZE = 3; // Frames in the ring used by CaptureMode.PIPELINED
+
+	private final FrameProcessor processor = new FrameProcessor(this); // Runs pipelines on grabbed frames
+	private final FrameScheduler scheduler; // Paces the capture thread at REFRESH_RATE
+	private CaptureMode captureMode = CaptureMode.SEQUENTIAL;
+	private volatile FrameRing ring; // Set when camera initialized in CaptureMode.PIPELINED
 
 	/**
 	 * Instantiates the AutomaticCVCamera object
@@ -58,6 +81,7 @@ public class AutomaticCVCamera extends CVCamera {
 	public AutomaticCVCamera(int refreshRate, double vFOV, double hFOV, double xPixels, double yPixels,
 			double horizontalOffset, double verticalOffset, double depthOffset, double hAngle, double vAngle) {
 		super(refreshRate, vFOV, hFOV, xPixels, yPixels, horizontalOffset, verticalOffset, depthOffset, hAngle, vAngle);
+		scheduler = new FrameScheduler(refreshRate, OverrunPolicy.SKIP);
 	}
 
 	/**
@@ -66,7 +90,56 @@ public class AutomaticCVCamera extends CVCamera {
 	 * @param p the pipeline to add.
 	 */
 	public void addPipeline(Pipeline p) {
-		pipelines.add(p);
+		processor.addPipeline(p);
+	}
+
+	/**
+	 * Adds a pipeline that processes the images the CVCamera takes, using a
+	 * separate instance of it on each thread that processes frames. Prefer this
+	 * over addPipeline(Pipeline) when pipelines run in parallel or frames are
+	 * processed from more than one thread.
+	 * 
+	 * @param factory creates the pipeline instances. Each instance must have its
+	 *                own supported targets set up.
+	 */
+	public void addPipeline(PipelineFactory factory) {
+		processor.addPipeline(factory);
+	}
+
+	/**
+	 * Sets how this camera's pipelines are run on each frame. With
+	 * PipelineExecution.PARALLEL, the pipelines run at the same time on up to one
+	 * thread per available processor, and a frame's sightings are published once
+	 * the slowest pipeline finishes. Must not be called while a frame is being
+	 * processed.
+	 * 
+	 * @param execution sequential (the default) or parallel execution
+	 */
+	public void setPipelineExecution(PipelineExecution execution) {
+		processor.setExecution(execution, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Sets how this camera's pipelines are run on each frame, limiting parallel
+	 * execution to a given number of threads. Must not be called while a frame is
+	 * being processed.
+	 * 
+	 * @param execution  sequential (the default) or parallel execution
+	 * @param maxThreads the most threads to run pipelines on at once, including
+	 *                   the thread that grabbed the frame
+	 */
+	public void setPipelineExecution(PipelineExecution execution, int maxThreads) {
+		processor.setExecution(execution, maxThreads);
+	}
+
+	/**
+	 * Sets how grabbing and processing frames are arranged. Must be called before
+	 * initializeCamera(). Defaults to CaptureMode.SEQUENTIAL.
+	 * 
+	 * @param mode the capture mode to use
+	 */
+	public void setCaptureMode(CaptureMode mode) {
+		this.captureMode = mode;
 	}
 
 	/**
@@ -74,54 +147,221 @@ public class AutomaticCVCamera extends CVCamera {
 	 * CVCamera will initialize a new Thread, then, depending on the refresh rate,
 	 * periodically grab a frame from the source, run it through any pipelines that
 	 * have been added to this camera, and save the resulting sightings of any
-	 * targets. Those sightings can be accessed at any time by getSightings()
+	 * targets. Those sightings can be accessed at any time by getSightings() <br/>
+	 * In CaptureMode.PIPELINED, a second thread is started to process the frames
+	 * the first one grabs.
 	 * 
 	 * @param source the source for frames of the CVCamera
 	 * @param name   the name of the CVCamera stream
 	 */
 	public void initializeCamera(VideoSource source, String name) {
-		CvSink sink = new CvSink(name);
-		sink.setSource(source);
-		sink.setEnabled(true);
+		start(new CvSinkFrameSource(source, name), source);
+	}
+
+	/**
+	 * Initializes the CVCamera with a given frame source, such as a folder of
+	 * images or a video file, instead of a cscore camera. Frames are grabbed and
+	 * processed the same way as with initializeCamera(VideoSource, String), and
+	 * no stream is started. Once the source is finished, the camera processes the
+	 * frames it has grabbed and stops.
+	 * 
+	 * @param source the source for frames of the CVCamera
+	 */
+	public void initializeCamera(FrameSource source) {
+		start(source, null);
+	}
+
+	/**
+	 * Starts the capture thread, and the processing thread in
+	 * CaptureMode.PIPELINED
+	 * 
+	 * @param frames the source to grab frames from
+	 * @param stream the cscore source to stream, or null to stream nothing
+	 */
+	private void start(FrameSource frames, VideoSource stream) {
+		String name = frames.getName();
+		if (captureMode == CaptureMode.PIPELINED) {
+			ring = new FrameRing(RING_SIZE);
+			new Thread(() -> processFrames(ring), name + " processing").start();
+		}
 		new Thread(() -> {
 			try {
-				CameraServer.getInstance().startAutomaticCapture(source);
-				Mat sourceMat = new Mat();
-				while (!interrupted()) {
-					try {
-						System.out.println("We're at least trying!");
-						sink.grabFrame(sourceMat);
-						process(sourceMat);
-						sleep((int) (1000.0 / REFRESH_RATE));
-					} catch (Exception e) {
-						System.err.println("Problem processing AutomaticCVCamera frame");
-						e.printStackTrace();
-					}
+				if (stream != null)
+					CameraServer.getInstance().startAutomaticCapture(stream);
+				if (ring != null) {
+					captureFrames(frames, ring);
+				} else {
+					captureAndProcessFrames(frames);
 				}
 			} catch (Exception e) {
 				System.err.println("Error setting up Automatic CV Camera");
 				e.printStackTrace();
+			} finally {
+				frames.close();
 			}
-		}).start();
+		}, name + " capture").start();
 	}
 
 	/**
-	 * Takes a frame that was grabbed by the Camera and runs the camera's
-	 * CVPipelines on that frame, finding and storing sightings to the pipelines'
-	 * supported targets
+	 * The capture thread's loop in CaptureMode.SEQUENTIAL. Grabs and processes
+	 * frames on schedule until the thread is interrupted or the source is
+	 * finished.
 	 * 
-	 * @param Source the captured frame
+	 * @param source the source to grab frames from
 	 */
-	private void process(Mat source) {
-		for (Pipeline pipeline : pipelines) {
-			ArrayList<Sighting> sightings = new ArrayList<Sighting>();
-			ArrayList<MatOfPoint> mats = pipeline.process(source);
-			mats.forEach(mop -> sightings.add(new Sighting(mop)));
+	private void captureAndProcessFrames(FrameSource source) {
+		Mat sourceMat = new Mat();
+		FrameClock clock = new FrameClock(source);
+		scheduler.start();
+		while (!interrupted() && !source.isFinished()) {
+			try {
+				scheduler.awaitNextFrame();
+				long grabStart = System.nanoTime();
+				long timestamp = source.grabFrame(sourceMat);
+				long grabbed = getMetrics().end("grab", grabStart);
+				if (timestamp == 0) {
+					getMetrics().counter("grabErrors").incrementAndGet();
+					System.err.println("Problem grabbing AutomaticCVCamera frame: " + source.getError());
+					continue;
+				}
+				processor.process(sourceMat, timestamp, clock.captureNanos(timestamp, grabbed));
+			} catch (InterruptedException e) {
+				break;
+			} catch (Exception e) {
+				System.err.println("Problem processing AutomaticCVCamera frame");
+				e.printStackTrace();
+			}
+		}
+	}
 
-			pipeline.getSupportedTargets().forEach(target -> {
-				activeTargets.putIfAbsent(target, new SightingContainer(this, target));
-				activeTargets.get(target).updateObjects((ArrayList<Sighting>) sightings.clone());
-			});
+	/**
+	 * The capture thread's loop in CaptureMode.PIPELINED. Grabs frames into the
+	 * ring on schedule until the thread is interrupted or the source is finished.
+	 * 
+	 * @param source the source to grab frames from
+	 * @param ring   the ring to store grabbed frames in
+	 */
+	private void captureFrames(FrameSource source, FrameRing ring) {
+		FrameClock clock = new FrameClock(source);
+		try {
+			scheduler.start();
+			while (!interrupted() && !source.isFinished()) {
+				int slot;
+				try {
+					scheduler.awaitNextFrame();
+					slot = ring.acquireForWrite();
+				} catch (InterruptedException e) {
+					break;
+				}
+				try {
+					long grabStart = System.nanoTime();
+					long timestamp = source.grabFrame(ring.get(slot));
+					long grabbed = getMetrics().end("grab", grabStart);
+					if (timestamp == 0) {
+						ring.abandon(slot);
+						getMetrics().counter("grabErrors").incrementAndGet();
+						System.err.println("Problem grabbing AutomaticCVCamera frame: " + source.getError());
+					} else {
+						ring.publish(slot, timestamp, clock.captureNanos(timestamp, grabbed));
+					}
+				} catch (Exception e) {
+					ring.abandon(slot);
+					getMetrics().counter("grabErrors").incrementAndGet();
+					System.err.println("Problem grabbing AutomaticCVCamera frame");
+					e.printStackTrace();
+				}
+			}
+		} finally {
+			// Lets the processing thread stop, however this thread stops
+			ring.finish();
+		}
+	}
+
+	/**
+	 * The processing thread's loop in CaptureMode.PIPELINED. Processes the newest
+	 * frame in the ring, over and over, until the thread is interrupted or the
+	 * capture thread has stopped and every frame has been taken.
+	 * 
+	 * @param ring the ring the capture thread stores frames in
+	 */
+	private void processFrames(FrameRing ring) {
+		while (!interrupted()) {
+			int slot;
+			try {
+				slot = ring.takeLatest();
+			} catch (InterruptedException e) {
+				break;
+			}
+			if (slot < 0)
+				break;
+			try {
+				processor.process(ring.get(slot), ring.getCaptureMicros(slot), ring.getCaptureNanos(slot));
+			} catch (Exception e) {
+				System.err.println("Problem processing AutomaticCVCamera frame");
+				e.printStackTrace();
+			} finally {
+				ring.release(slot);
+			}
 		}
 	}
+
+	/**
+	 * Returns the number of frames that were grabbed but never processed because
+	 * a newer frame arrived first. Always 0 outside of CaptureMode.PIPELINED.
+	 * 
+	 * @return the number of dropped frames
+	 */
+	public long getDroppedFrameCount() {
+		return ring == null ? 0 : ring.getDroppedCount();
+	}
+
+	/**
+	 * Returns the number of frames the capture thread has grabbed successfully in
+	 * CaptureMode.PIPELINED. Always 0 in other modes.
+	 * 
+	 * @return the number of frames captured
+	 */
+	public long getCapturedFrameCount() {
+		return ring == null ? 0 : ring.getCapturedCount();
+	}
+
+	/**
+	 * Sets what the capture thread does when processing a frame takes longer than
+	 * one period (1/refreshRate seconds). Defaults to OverrunPolicy.SKIP. May be
+	 * changed while the camera is running.
+	 * 
+	 * @param policy the overrun policy to use
+	 */
+	public void setOverrunPolicy(OverrunPolicy policy) {
+		scheduler.setOverrunPolicy(policy);
+	}
+
+	/**
+	 * Returns the frame rate the capture thread is actually achieving. Should be
+	 * close to the refresh rate unless frames are overrunning.
+	 * 
+	 * @return the achieved frames per second, averaged over the last few frames
+	 */
+	public double getAchievedFPS() {
+		return scheduler.getAchievedFPS();
+	}
+
+	/**
+	 * Returns how far frames have been starting from their scheduled time
+	 * 
+	 * @return the average jitter over the last few frames, in milliseconds
+	 */
+	public double getFrameJitterMillis() {
+		return scheduler.getJitterMillis();
+	}
+
+	/**
+	 * Returns the number of frames that have started a whole period or more late
+	 * because the frame before them took too long
+	 * 
+	 * @return the number of overruns since the camera was created
+	 */
+	public long getOverrunCount() {
+		return scheduler.getOverrunCount();
+	}
 }
\ No newline at end of file
@@ -1,11 +1,19 @@
 package cameras;
 
 
-import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
 
+import math.CameraModel;
+import metrics.StageMetrics;
 import processing.Sighting;
 import processing.SightingContainer;
+import processing.SightingHistory;
+import processing.Track;
 import processing.VisionTarget;
 /**
  * An abstract class that allows for storage of data related to a camera on the robot, including
@@ -28,11 +36,33 @@ public abstract class CVCamera implements Camera {
 	private double horizontalOffset, verticalOffset, depthOffset;
 	private double horizontalAngle, verticalAngle;
 
+	// Pinhole model built from the parameters above, shared by every frame's math.
+	// Replaced (never modified) when lookup tables are turned on or off.
+	private volatile CameraModel model;
+
 	// A list of the targets this camera is currently outputting to. Should be
 	// set dynamically in order to allow access to
-	// A specific target's sightings each frame
+	// A specific target's sightings each frame. Only touched by the thread that
+	// processes frames; other threads read the published FrameSnapshot instead.
 	protected HashMap<VisionTarget, SightingContainer> activeTargets = new HashMap<>();
 
+	// The most recently published frame. Swapped atomically so readers never see a
+	// partially-processed frame.
+	private final AtomicReference<FrameSnapshot> latestFrame = new AtomicReference<>(FrameSnapshot.EMPTY);
+	private long frameSequence = 0; // Sequence number of the last published frame
+
+	// Histories of the targets that keep one. Filled in as targets are first
+	// published, and readable from any thread.
+	private final ConcurrentHashMap<VisionTarget, SightingHistory> histories = new ConcurrentHashMap<>();
+
+	// Timings of this camera's stages, and of each target's stages on this camera.
+	// Readable from any thread.
+	private final StageMetrics metrics = new StageMetrics(getClass().getSimpleName());
+	private final ConcurrentHashMap<VisionTarget, StageMetrics> targetMetrics = new ConcurrentHashMap<>();
+
+	// Called with each published frame
+	private final CopyOnWriteArrayList<FrameListener> frameListeners = new CopyOnWriteArrayList<>();
+
 	/**
 	 * Instantiates the Camera object
 	 * 
@@ -65,6 +95,8 @@ public abstract class CVCamera implements Camera {
 		this.depthOffset = depthOffset;
 		this.horizontalAngle = hAngle;
 		this.verticalAngle = vAngle;
+		this.model = new CameraModel(hFOV, vFOV, xPixels, yPixels, horizontalOffset, verticalOffset, depthOffset,
+				hAngle, vAngle);
 	}
 
 	/**
@@ -75,9 +107,7 @@ public abstract class CVCamera implements Camera {
 	 * @return the number of sightings identified
 	 */
 	public int sightingCount(VisionTarget vt) {
-		if (!activeTargets.containsKey(vt))
-			return 0;
-		return activeTargets.get(vt).sightingCount();
+		return latestFrame.get().sightingCount(vt);
 	}
 
 	/**
@@ -85,10 +115,162 @@ public abstract class CVCamera implements Camera {
 	 * frame
 	 * 
 	 * @param vt the specified vision target
-	 * @return the list of sightings
+	 * @return a read-only list of sightings, or null if the target has not been
+	 *         searched for
+	 */
+	public List<Sighting> getSightings(VisionTarget vt) {
+		FrameSnapshot frame = latestFrame.get();
+		return frame.hasTarget(vt) ? frame.getSightings(vt) : null;
+	}
+
+	/**
+	 * Returns everything this camera found in the last processed frame. Unlike
+	 * calling getSightings() once per target, all values in the returned snapshot
+	 * are guaranteed to come from the same frame.
+	 * 
+	 * @return the latest frame snapshot. Its sequence number is 0 if no frame has
+	 *         been processed yet.
+	 */
+	public FrameSnapshot getLatestFrame() {
+		return latestFrame.get();
+	}
+
+	/**
+	 * Returns the history of recent frames of a target, for finding where the
+	 * target was at a given time. Only kept for targets with history enabled (see
+	 * VisionTarget.enableHistory()). Safe to use from any thread.
+	 * 
+	 * @param vt the vision target
+	 * @return the target's history, or null if it keeps none or no frame with it
+	 *         has been processed yet
+	 */
+	public SightingHistory getHistory(VisionTarget vt) {
+		return histories.get(vt);
+	}
+
+	/**
+	 * Returns the timings of this camera's stages: grabbing frames ("grab"),
+	 * running pipelines ("pipelines"), updating targets ("targets"), the whole of
+	 * processing ("process") and the time from capture to publishing ("latency").
+	 * Also counts published frames ("frames") and failed grabs ("grabErrors").
+	 * Safe to use from any thread.
+	 * 
+	 * @return the camera's metrics
+	 */
+	public StageMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Returns the timings of a target's stages on this camera. See
+	 * SightingContainer for the stages timed. Safe to use from any thread.
+	 * 
+	 * @param vt the vision target
+	 * @return the target's metrics. Empty until a frame with the target has been
+	 *         processed.
+	 */
+	public StageMetrics getMetrics(VisionTarget vt) {
+		StageMetrics m = targetMetrics.get(vt);
+		return m != null ? m : targetMetrics.computeIfAbsent(vt, v -> new StageMetrics(v.getName()));
+	}
+
+	/**
+	 * Adds a listener that is given every frame this camera publishes, such as a
+	 * SightingLogWriter. Listeners are called on the processing thread, in the
+	 * order they were added, right after the frame becomes the latest frame.
+	 * 
+	 * @param listener the listener to add
+	 */
+	public void addFrameListener(FrameListener listener) {
+		frameListeners.add(listener);
+	}
+
+	/**
+	 * Removes a listener added by addFrameListener()
+	 * 
+	 * @param listener the listener to remove
+	 */
+	public void removeFrameListener(FrameListener listener) {
+		frameListeners.remove(listener);
+	}
+
+	/**
+	 * Publishes the current sightings of every active target as a new frame.
+	 * Must be called by the processing thread once it has finished updating all
+	 * SightingContainers for a frame; until then, readers keep seeing the previous
+	 * frame. The frame is treated as captured and processed just now; if its
+	 * timing is known, use publishFrame(long, long, long, long) instead.
+	 */
+	protected void publishFrame() {
+		long now = System.nanoTime();
+		publishFrame(0, now, now, now);
+	}
+
+	/**
+	 * Publishes the current sightings of every active target as a new frame,
+	 * along with when it was captured and processed. See publishFrame(). Sightings
+	 * found in this frame are given its timing; sightings left from earlier
+	 * frames keep theirs.
+	 * 
+	 * @param captureTimestamp  the timestamp grabFrame() gave the frame, in
+	 *                          microseconds, or 0 if unknown
+	 * @param captureNanos      when the frame was captured, from System.nanoTime()
+	 * @param processStartNanos when processing the frame started
+	 * @param processEndNanos   when processing the frame finished
+	 */
+	protected void publishFrame(long captureTimestamp, long captureNanos, long processStartNanos,
+			long processEndNanos) {
+		FrameTiming timing = new FrameTiming(captureTimestamp, captureNanos, processStartNanos, processEndNanos,
+				System.nanoTime());
+		Map<VisionTarget, List<Sighting>> sightings = new HashMap<>(activeTargets.size() * 2);
+		Map<VisionTarget, List<Track>> tracks = new HashMap<>(activeTargets.size() * 2);
+		for (Map.Entry<VisionTarget, SightingContainer> entry : activeTargets.entrySet()) {
+			entry.getValue().setFrameTiming(timing);
+			sightings.put(entry.getKey(), entry.getValue().getSightings());
+			tracks.put(entry.getKey(), entry.getValue().getTracks());
+			SightingHistory history = entry.getValue().getHistory();
+			if (history != null)
+				histories.putIfAbsent(entry.getKey(), history);
+		}
+		FrameSnapshot frame = new FrameSnapshot(this, ++frameSequence, timing, sightings, tracks);
+		latestFrame.set(frame);
+		metrics.stage("latency").record(timing.getLatencyNanos());
+		metrics.counter("frames").incrementAndGet();
+		for (FrameListener listener : frameListeners) {
+			try {
+				listener.framePublished(frame);
+			} catch (RuntimeException e) {
+				System.err.println("Problem in frame listener");
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Returns the pinhole model of this camera and its placement, with
+	 * everything that doesn't change between frames precomputed
+	 * 
+	 * @return the camera model
+	 */
+	public CameraModel getModel() {
+		return model;
+	}
+
+	/**
+	 * Turns on lookup tables for the camera-based yaw and pitch of each pixel. Since
+	 * the resolution is fixed, the angle to every x and y coordinate can be
+	 * precomputed, and each sighting's angles become table lookups with linear
+	 * interpolation instead of Math.atan() calls. The error of the tables is
+	 * available from getModel().getLookupTableError().
+	 * 
+	 * @param subdivisions the number of table samples per pixel, at least 1. Pass
+	 *                     0 to turn lookup tables off and calculate angles
+	 *                     exactly.
 	 */
-	public ArrayList<Sighting> getSightings(VisionTarget vt) {
-		return activeTargets.containsKey(vt) ? activeTargets.get(vt).getSightings() : null;
+	public void setAngleLookupTables(int subdivisions) {
+		CameraModel exact = new CameraModel(horizontalFOV, verticalFOV, pixelWidth, pixelHeight, horizontalOffset,
+				verticalOffset, depthOffset, horizontalAngle, verticalAngle);
+		model = subdivisions == 0 ? exact : exact.withLookupTables(subdivisions);
 	}
 
 	/**
@@ -1,6 +1,6 @@
 package cameras;
 
-import java.util.ArrayList;
+import java.util.List;
 
 import processing.Sighting;
 import processing.VisionTarget;
@@ -19,9 +19,9 @@ public interface Camera {
 	 * frame
 	 * 
 	 * @param vt the specified vision target
-	 * @return the list of sightings
+	 * @return the list of sightings. Should be treated as read-only.
 	 */
-	public ArrayList<Sighting> getSightings(VisionTarget vt);
+	public List<Sighting> getSightings(VisionTarget vt);
 
 	
 }
@@ -0,0 +1,71 @@
+package cameras;
+
+import org.opencv.core.Mat;
+
+import edu.wpi.cscore.CvSink;
+import edu.wpi.cscore.VideoSource;
+
+/**
+ * Grabs frames from a cscore video source, such as a USB or network camera,
+ * through a CvSink. Frame times come from cscore's clock.
+ * 
+ * @author Jeff
+ *
+ */
+public class CvSinkFrameSource implements FrameSource {
+	private final CvSink sink;
+	private final String name;
+
+	/**
+	 * Creates a sink on a video source and enables it
+	 * 
+	 * @param source the video source to grab frames from
+	 * @param name   the name of the sink
+	 */
+	public CvSinkFrameSource(VideoSource source, String name) {
+		this.name = name;
+		sink = new CvSink(name);
+		sink.setSource(source);
+		sink.setEnabled(true);
+	}
+
+	/**
+	 * Grabs frames from a sink that has already been set up
+	 * 
+	 * @param sink the sink to grab frames from
+	 * @param name the name of the sink
+	 */
+	public CvSinkFrameSource(CvSink sink, String name) {
+		this.sink = sink;
+		this.name = name;
+	}
+
+	@Override
+	public long grabFrame(Mat image) {
+		return sink.grabFrame(image);
+	}
+
+	@Override
+	public String getError() {
+		return sink.getError();
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public void close() {
+		sink.close();
+	}
+
+	/**
+	 * Returns the sink frames are grabbed from
+	 * 
+	 * @return the sink
+	 */
+	public CvSink getSink() {
+		return sink;
+	}
+}
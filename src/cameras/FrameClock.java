@@ -0,0 +1,45 @@
+package cameras;
+
+/**
+ * Turns the timestamps a frame source gives its frames into capture times from
+ * System.nanoTime(). Frames from a live source were captured just before they
+ * were grabbed, so they keep the time grabbing returned. Frames from any other
+ * source are placed on the source's own timeline, starting from when the first
+ * one was grabbed (see FrameSource.isLive()). <br/>
+ * Used by one thread at a time.
+ * 
+ * @author Jeff
+ *
+ */
+class FrameClock {
+	private final boolean live;
+	private long firstTimestamp = 0; // Timestamp of the first frame, 0 until one is grabbed
+	private long firstNanos; // When the first frame was grabbed
+
+	/**
+	 * Creates a clock for the frames of a source
+	 * 
+	 * @param source the source frames are grabbed from
+	 */
+	FrameClock(FrameSource source) {
+		this.live = source.isLive();
+	}
+
+	/**
+	 * Returns when a frame was captured
+	 * 
+	 * @param timestamp    the timestamp grabFrame() gave the frame, in
+	 *                     microseconds
+	 * @param grabbedNanos when grabbing the frame returned, from System.nanoTime()
+	 * @return when the frame was captured, from System.nanoTime()
+	 */
+	long captureNanos(long timestamp, long grabbedNanos) {
+		if (live)
+			return grabbedNanos;
+		if (firstTimestamp == 0) {
+			firstTimestamp = timestamp;
+			firstNanos = grabbedNanos;
+		}
+		return firstNanos + (timestamp - firstTimestamp) * 1000;
+	}
+}
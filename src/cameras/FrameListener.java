@@ -0,0 +1,20 @@
+package cameras;
+
+/**
+ * A function that is given each frame a camera publishes, see
+ * CVCamera.addFrameListener()
+ * 
+ * @author Jeff
+ *
+ */
+@FunctionalInterface
+public interface FrameListener {
+	/**
+	 * Called with each frame a camera publishes, on the thread that processed it.
+	 * Must return quickly, since the camera's next frame waits for it; slow work
+	 * should be handed off to another thread.
+	 * 
+	 * @param frame the published frame
+	 */
+	public void framePublished(FrameSnapshot frame);
+}
@@ -0,0 +1,256 @@
+package cameras;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+
+import math.CameraModel;
+import metrics.StageMetrics;
+import processing.Pipeline;
+import processing.PipelineFactory;
+import processing.Sighting;
+import processing.SightingContainer;
+import processing.VisionTarget;
+
+/**
+ * Runs a camera's pipelines on a frame and stores the results as sightings of
+ * their supported targets, then publishes the frame. Shared by the cameras
+ * that process OpenCV frames so they all process frames the same way. <br/>
+ * Each pipeline is looked up per thread. Pipelines added as instances are
+ * shared by every thread, while pipelines added through a PipelineFactory get
+ * one instance per thread that runs them. Storing results and publishing the
+ * frame are serialized, so with factory pipelines several frames may be
+ * processed at once. <br/>
+ * Work that only depends on a sighting's pixels, such as its camera-based
+ * angles, is done once per pipeline output. Each supported target then gets its
+ * own copies of the sightings to calculate target-specific values in. <br/>
+ * Each stage is timed into the camera's, the pipeline's and the target's
+ * StageMetrics. Every instance a PipelineFactory creates shares one set of
+ * metrics, so a pipeline's timings cover every thread that runs it.
+ * 
+ * @author Jeff
+ *
+ */
+class FrameProcessor {
+	private final CVCamera camera;
+	private final ArrayList<ThreadLocal<Pipeline>> pipelines = new ArrayList<>();
+	private PipelineExecution execution = PipelineExecution.SEQUENTIAL;
+	private int maxThreads = Runtime.getRuntime().availableProcessors();
+	private ExecutorService pool; // Created the first time pipelines are run in parallel
+
+	/**
+	 * Creates a processor that stores its results in the given camera
+	 * 
+	 * @param camera the camera whose targets and frames this processor updates
+	 */
+	FrameProcessor(CVCamera camera) {
+		this.camera = camera;
+	}
+
+	/**
+	 * Adds a pipeline that processes each frame. The same instance is used by
+	 * every thread, so it must not run on two frames at once.
+	 * 
+	 * @param p the pipeline to add
+	 */
+	void addPipeline(Pipeline p) {
+		pipelines.add(ThreadLocal.withInitial(() -> p));
+	}
+
+	/**
+	 * Adds a pipeline that processes each frame, creating a separate instance for
+	 * each thread that runs it
+	 * 
+	 * @param factory creates the pipeline instances
+	 */
+	void addPipeline(PipelineFactory factory) {
+		StageMetrics metrics = new StageMetrics("pipeline " + pipelines.size());
+		pipelines.add(ThreadLocal.withInitial(() -> {
+			Pipeline p = factory.create();
+			p.setMetrics(metrics);
+			return p;
+		}));
+	}
+
+	/**
+	 * Sets how pipelines are run on each frame
+	 * 
+	 * @param execution  sequential or parallel execution
+	 * @param maxThreads the most threads to run pipelines on in parallel,
+	 *                   including the calling thread
+	 */
+	void setExecution(PipelineExecution execution, int maxThreads) {
+		if (maxThreads < 1)
+			throw new IllegalArgumentException("At least one thread is needed to run pipelines, was given " + maxThreads);
+		this.execution = execution;
+		this.maxThreads = maxThreads;
+		if (pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+	}
+
+	/**
+	 * Takes a frame that was grabbed by the Camera and runs the camera's
+	 * CVPipelines on that frame, finding and storing sightings to the pipelines'
+	 * supported targets. Publishes the frame once every pipeline has finished.
+	 * 
+	 * @param source       the captured frame. Only read, never modified.
+	 * @param timestamp    the timestamp grabFrame() gave the frame, in
+	 *                     microseconds, or 0 if unknown
+	 * @param grabbedNanos when grabbing the frame returned, from System.nanoTime()
+	 */
+	void process(Mat source, long timestamp, long grabbedNanos) {
+		long startNanos = System.nanoTime();
+		CameraModel model = camera.getModel();
+		ArrayList<PipelineOutput> outputs;
+		if (execution == PipelineExecution.PARALLEL && pipelines.size() > 1 && maxThreads > 1) {
+			outputs = runInParallel(source, model);
+		} else {
+			outputs = new ArrayList<>(pipelines.size());
+			for (ThreadLocal<Pipeline> pipeline : pipelines) {
+				outputs.add(runPipeline(pipeline.get(), source, model));
+			}
+		}
+		StageMetrics cameraMetrics = camera.getMetrics();
+		cameraMetrics.end("pipelines", startNanos);
+
+		// Targets are updated in pipeline order by one thread at a time, since
+		// several pipelines may feed the same target
+		synchronized (this) {
+			long targetsStart = System.nanoTime();
+			for (PipelineOutput output : outputs) {
+				ArrayList<VisionTarget> targets = output.pipeline.getSupportedTargets();
+				for (VisionTarget target : targets) {
+					camera.activeTargets.putIfAbsent(target, new SightingContainer(camera, target));
+					camera.activeTargets.get(target).updateObjects(viewsFor(output.sightings, targets.size()),
+							grabbedNanos);
+				}
+			}
+			long endNanos = cameraMetrics.end("targets", targetsStart);
+			cameraMetrics.stage("process").record(endNanos - startNanos);
+			camera.publishFrame(timestamp, grabbedNanos, startNanos, endNanos);
+		}
+	}
+
+	/**
+	 * Returns the sightings a target should process. Each target stores its own
+	 * values in the sightings it is given, so when a pipeline feeds several
+	 * targets, each one gets copies that share the pixel data and the angles
+	 * already calculated for the originals.
+	 * 
+	 * @param sightings   a pipeline's sightings
+	 * @param targetCount the number of targets the pipeline feeds
+	 * @return a new list of sightings for one target
+	 */
+	private static ArrayList<Sighting> viewsFor(ArrayList<Sighting> sightings, int targetCount) {
+		if (targetCount == 1)
+			return new ArrayList<>(sightings);
+		ArrayList<Sighting> views = new ArrayList<>(sightings.size());
+		for (Sighting sighting : sightings) {
+			views.add(new Sighting(sighting));
+		}
+		return views;
+	}
+
+	/**
+	 * Runs every pipeline on the frame at once. The first pipeline runs on the
+	 * calling thread while the rest run on the pool. Does not return until every
+	 * pipeline is done with the frame, even if one of them fails.
+	 * 
+	 * @param source the captured frame
+	 * @param model  the camera model to calculate angles with
+	 * @return the output of each pipeline, in pipeline order
+	 */
+	private ArrayList<PipelineOutput> runInParallel(Mat source, CameraModel model) {
+		if (pool == null) {
+			pool = Executors.newFixedThreadPool(maxThreads - 1, r -> {
+				Thread t = new Thread(r, "Pipeline worker");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		ArrayList<Future<PipelineOutput>> futures = new ArrayList<>(pipelines.size() - 1);
+		for (int i = 1; i < pipelines.size(); i++) {
+			ThreadLocal<Pipeline> pipeline = pipelines.get(i);
+			futures.add(pool.submit(() -> runPipeline(pipeline.get(), source, model)));
+		}
+
+		ArrayList<PipelineOutput> outputs = new ArrayList<>(pipelines.size());
+		RuntimeException failure = null;
+		try {
+			outputs.add(runPipeline(pipelines.get(0).get(), source, model));
+		} catch (RuntimeException e) {
+			failure = e;
+		}
+		boolean interrupted = false;
+		for (Future<PipelineOutput> future : futures) {
+			while (true) {
+				try {
+					outputs.add(future.get());
+					break;
+				} catch (InterruptedException e) {
+					// The frame must not be reused until every pipeline is done reading it
+					interrupted = true;
+				} catch (ExecutionException e) {
+					if (failure == null)
+						failure = new RuntimeException("Pipeline failed to process frame", e.getCause());
+					break;
+				}
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		if (failure != null)
+			throw failure;
+		return outputs;
+	}
+
+	/**
+	 * Runs one pipeline on the frame and turns its contours into sightings. The
+	 * camera-based yaw and pitch of each sighting only depend on its pixels, so
+	 * they are calculated here once, however many targets the pipeline feeds.
+	 * Running the pipeline is timed as its "process" stage, and making the
+	 * sightings as its "sightings" stage.
+	 * 
+	 * @param pipeline the pipeline to run
+	 * @param source   the captured frame
+	 * @param model    the camera model to calculate angles with
+	 * @return the pipeline that ran and a new list of sightings, one per contour
+	 */
+	private static PipelineOutput runPipeline(Pipeline pipeline, Mat source, CameraModel model) {
+		StageMetrics metrics = pipeline.getMetrics();
+		long start = System.nanoTime();
+		ArrayList<MatOfPoint> mats = pipeline.process(source);
+		long processed = metrics.end("process", start);
+		ArrayList<Sighting> sightings = new ArrayList<Sighting>(mats.size());
+		for (MatOfPoint mop : mats) {
+			Sighting sighting = new Sighting(mop);
+			sighting.setCameraBasedPitch(model.getYAngle(sighting.getCenterY()));
+			sighting.setCameraBasedYaw(model.getXAngle(sighting.getCenterX()));
+			sightings.add(sighting);
+		}
+		metrics.end("sightings", processed);
+		metrics.counter("contours").addAndGet(mats.size());
+		return new PipelineOutput(pipeline, sightings);
+	}
+
+	/**
+	 * The sightings one pipeline instance found in a frame. The instance is kept
+	 * so its supported targets are the ones that receive the sightings.
+	 */
+	private static class PipelineOutput {
+		final Pipeline pipeline;
+		final ArrayList<Sighting> sightings;
+
+		PipelineOutput(Pipeline pipeline, ArrayList<Sighting> sightings) {
+			this.pipeline = pipeline;
+			this.sightings = sightings;
+		}
+	}
+}
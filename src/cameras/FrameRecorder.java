@@ -0,0 +1,251 @@
+package cameras;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+/**
+ * Records frames and their capture times to disk, to be replayed later by a
+ * ReplayCVCamera. Frames are appended to segment files (see FrameSegments)
+ * that are preallocated at a fixed size and memory-mapped, so recording a
+ * frame never waits for the disk: the operating system writes it out in the
+ * background, and the file never has to grow while recording. Each frame is
+ * copied twice in memory, out of its Mat into a reused array and then into the
+ * mapping, since OpenCV's Java Mat has no way to copy into a buffer directly.
+ * When a segment is full, the next one is started. <br/>
+ * A recorder never overwrites footage: if the folder already has a recording
+ * of the same name, recording fails instead. <br/>
+ * The easiest way to record a camera is to give it a source wrapped by
+ * recording(), which records every frame the camera grabs. <br/>
+ * Only frames with 8 bits per channel can be recorded, which includes every
+ * frame a camera grabs. A recorder is used by one thread at a time.
+ * 
+ * @author Jeff
+ *
+ */
+public class FrameRecorder {
+	/**
+	 * The default size of each segment file: 256 MiB, or about 1000 frames of 320
+	 * by 240 color video. Each finished segment stays mapped until it is garbage
+	 * collected (see close()), so on a 32-bit JVM, where address space is short,
+	 * smaller segments should be used.
+	 */
+	public static final long DEFAULT_SEGMENT_BYTES = 256L << 20;
+
+	private final File directory;
+	private final String name;
+	private final long segmentBytes;
+	private File segmentFile; // The segment being written
+	private RandomAccessFile file;
+	private MappedByteBuffer segment;
+	private int segmentIndex = -1;
+	private int segmentFrames; // Frames in the segment being written
+	private long position; // Where the next frame goes in the segment
+	private long frameCount = 0;
+	private byte[] pixels = new byte[0]; // Reused to copy each frame out of its Mat
+
+	/**
+	 * Creates a recorder with segments of DEFAULT_SEGMENT_BYTES
+	 * 
+	 * @param directory the folder to write the recording to. Created if needed.
+	 * @param name      the name of the recording, which starts each file's name
+	 */
+	public FrameRecorder(File directory, String name) {
+		this(directory, name, DEFAULT_SEGMENT_BYTES);
+	}
+
+	/**
+	 * Creates a recorder
+	 * 
+	 * @param directory    the folder to write the recording to. Created if
+	 *                     needed.
+	 * @param name         the name of the recording, which starts each file's
+	 *                     name
+	 * @param segmentBytes the size of each segment file. Must hold at least one
+	 *                     frame, and be less than 2 GiB.
+	 */
+	public FrameRecorder(File directory, String name, long segmentBytes) {
+		if (segmentBytes <= FrameSegments.HEADER_BYTES || segmentBytes > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Segments must be between " + FrameSegments.HEADER_BYTES
+					+ " bytes and 2 GiB, was given " + segmentBytes);
+		this.directory = directory;
+		this.name = name;
+		this.segmentBytes = segmentBytes;
+	}
+
+	/**
+	 * Appends a frame to the recording
+	 * 
+	 * @param frame           the frame. Only read, never modified.
+	 * @param timestampMicros the timestamp the frame was grabbed with
+	 * @param captureNanos    when the frame was grabbed, from System.nanoTime().
+	 *                        Used to replay frames at the speed they arrived.
+	 * @throws IOException if a segment file could not be created, or the folder
+	 *                     already has a recording of the same name
+	 */
+	public void record(Mat frame, long timestampMicros, long captureNanos) throws IOException {
+		int type = frame.type();
+		if (CvType.ELEM_SIZE(type) != CvType.channels(type))
+			throw new IllegalArgumentException("Only frames with 8 bits per channel can be recorded, was given type "
+					+ type);
+		long length = frame.total() * frame.elemSize();
+		long needed = FrameSegments.frameBytes(length);
+		if (needed > segmentBytes - FrameSegments.HEADER_BYTES)
+			throw new IllegalArgumentException(
+					"A frame of " + length + " bytes does not fit in segments of " + segmentBytes + " bytes");
+		if (segment == null || position + needed > segmentBytes)
+			startSegment();
+
+		if (pixels.length != length)
+			pixels = new byte[(int) length];
+		frame.get(0, 0, pixels); // Copies row by row if the frame is part of a larger image
+
+		int at = (int) position;
+		segment.putLong(at, timestampMicros);
+		segment.putLong(at + 8, captureNanos);
+		segment.putInt(at + 16, frame.rows());
+		segment.putInt(at + 20, frame.cols());
+		segment.putInt(at + 24, type);
+		segment.putInt(at + 28, (int) length);
+		segment.position(at + FrameSegments.FRAME_HEADER_BYTES);
+		segment.put(pixels, 0, (int) length);
+		position += needed;
+
+		// Only count the frame once all of it is written
+		segment.putLong(FrameSegments.END_OFFSET, position);
+		segment.putInt(FrameSegments.FRAME_COUNT_OFFSET, ++segmentFrames);
+		frameCount++;
+	}
+
+	/**
+	 * Wraps a frame source so that every frame grabbed from it is also recorded.
+	 * If recording fails, the error is printed and frames are still grabbed, but
+	 * no longer recorded. Closing the wrapped source closes this recorder.
+	 * 
+	 * @param source the source to record
+	 * @return a source that grabs from the given one and records what it grabs
+	 */
+	public FrameSource recording(FrameSource source) {
+		return new FrameSource() {
+			private final FrameClock clock = new FrameClock(source); // Times frames as the camera will
+			private boolean failed = false;
+
+			@Override
+			public long grabFrame(Mat image) {
+				long timestamp = source.grabFrame(image);
+				if (timestamp != 0 && !failed) {
+					try {
+						record(image, timestamp, clock.captureNanos(timestamp, System.nanoTime()));
+					} catch (IOException | RuntimeException e) {
+						failed = true;
+						System.err.println("Problem recording frames from " + source.getName() + ", recording stopped");
+						e.printStackTrace();
+					}
+				}
+				return timestamp;
+			}
+
+			@Override
+			public String getError() {
+				return source.getError();
+			}
+
+			@Override
+			public String getName() {
+				return source.getName();
+			}
+
+			@Override
+			public boolean isFinished() {
+				return source.isFinished();
+			}
+
+			@Override
+			public boolean isLive() {
+				return source.isLive();
+			}
+
+			@Override
+			public void close() {
+				source.close();
+				try {
+					FrameRecorder.this.close();
+				} catch (IOException e) {
+					System.err.println("Problem closing recording of " + source.getName());
+					e.printStackTrace();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Finishes the segment being written. Later frames start a new segment. The
+	 * operating system still writes the segment to disk in the background. <br/>
+	 * Java has no way to unmap a file, so the segment's mapping is only released
+	 * once the recorder's reference to it is garbage collected.
+	 * 
+	 * @throws IOException if the segment file could not be closed
+	 */
+	public void close() throws IOException {
+		if (segment == null)
+			return;
+		segment = null;
+		try {
+			// Gives back the unused end of the segment. Windows doesn't allow this while
+			// the file is still mapped, in which case it keeps its full size.
+			file.setLength(position);
+		} catch (IOException e) {
+			System.err.println("Could not trim recording segment " + segmentFile + ", it keeps its full size: "
+					+ e.getMessage());
+		}
+		file.close();
+		file = null;
+	}
+
+	/**
+	 * Returns the number of frames recorded
+	 * 
+	 * @return the number of frames
+	 */
+	public long getFrameCount() {
+		return frameCount;
+	}
+
+	/**
+	 * Returns the number of segment files started
+	 * 
+	 * @return the number of segments
+	 */
+	public int getSegmentCount() {
+		return segmentIndex + 1;
+	}
+
+	/**
+	 * Closes the segment being written, if any, and starts the next one
+	 */
+	private void startSegment() throws IOException {
+		close();
+		directory.mkdirs();
+		// Segments of an earlier recording of the same name would be replayed along
+		// with this one, and would be overwritten
+		if (segmentIndex < 0 && FrameSegments.list(directory, name).length > 0)
+			throw new IOException("A recording named " + name + " already exists in " + directory);
+		segmentFile = FrameSegments.segmentFile(directory, name, ++segmentIndex);
+		file = new RandomAccessFile(segmentFile, "rw");
+		file.setLength(segmentBytes);
+		segment = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+		segment.order(ByteOrder.LITTLE_ENDIAN);
+		segment.putInt(0, FrameSegments.MAGIC);
+		segment.putInt(4, FrameSegments.VERSION);
+		segment.putInt(FrameSegments.FRAME_COUNT_OFFSET, 0);
+		segment.putLong(FrameSegments.END_OFFSET, FrameSegments.HEADER_BYTES);
+		segmentFrames = 0;
+		position = FrameSegments.HEADER_BYTES;
+	}
+}
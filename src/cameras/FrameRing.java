@@ -0,0 +1,176 @@
+package cameras;
+
+import org.opencv.core.Mat;
+
+/**
+ * A small ring of preallocated frames shared between a capture thread and a
+ * processing thread. The capture thread always has a free slot to grab into,
+ * and the processing thread always takes the newest complete frame. If a
+ * complete frame is replaced by a newer one before it was taken, it is dropped
+ * and counted. <br/>
+ * Since the same Mats are reused every frame, grabbing a frame of an unchanged
+ * size never allocates.
+ * 
+ * @author Jeff
+ *
+ */
+class FrameRing {
+	private static final int NONE = -1;
+
+	private final Mat[] frames;
+	private final long[] captureMicros, captureNanos; // When each slot's frame was grabbed
+	private int writing = NONE; // Slot the capture thread is filling
+	private int latest = NONE; // Newest complete slot that hasn't been taken yet
+	private int reading = NONE; // Slot the processing thread is working on
+	private int nextSlot = 0; // Where the search for a free slot starts, so slots are used round-robin
+	private long capturedCount, droppedCount;
+	private boolean finished = false; // Set once the capture thread will publish no more frames
+
+	/**
+	 * Creates the ring and allocates its frames
+	 * 
+	 * @param size the number of frames. Must be at least 3: one being written, one
+	 *             complete and one being read.
+	 */
+	FrameRing(int size) {
+		if (size < 3)
+			throw new IllegalArgumentException("A frame ring needs at least 3 slots, was given " + size);
+		frames = new Mat[size];
+		captureMicros = new long[size];
+		captureNanos = new long[size];
+		for (int i = 0; i < size; i++) {
+			frames[i] = new Mat();
+		}
+	}
+
+	/**
+	 * Reserves a slot for the capture thread to grab a frame into
+	 * 
+	 * @return the index of the slot
+	 */
+	synchronized int acquireForWrite() {
+		while (nextSlot == latest || nextSlot == reading) {
+			nextSlot = (nextSlot + 1) % frames.length;
+		}
+		writing = nextSlot;
+		nextSlot = (nextSlot + 1) % frames.length;
+		return writing;
+	}
+
+	/**
+	 * Marks the slot being written as the newest complete frame. If the previous
+	 * complete frame was never taken, it is dropped.
+	 * 
+	 * @param slot         the slot returned by acquireForWrite()
+	 * @param timestamp    the timestamp grabFrame() returned, in microseconds
+	 * @param captureNanos when the frame was captured, from System.nanoTime()
+	 */
+	synchronized void publish(int slot, long timestamp, long captureNanos) {
+		captureMicros[slot] = timestamp;
+		this.captureNanos[slot] = captureNanos;
+		if (latest != NONE)
+			droppedCount++;
+		latest = slot;
+		writing = NONE;
+		capturedCount++;
+		notifyAll();
+	}
+
+	/**
+	 * Gives back a slot that was reserved for writing without publishing it, for
+	 * example because grabbing the frame failed
+	 * 
+	 * @param slot the slot returned by acquireForWrite()
+	 */
+	synchronized void abandon(int slot) {
+		writing = NONE;
+	}
+
+	/**
+	 * Marks that no more frames will be published. The frame already waiting, if
+	 * any, can still be taken.
+	 */
+	synchronized void finish() {
+		finished = true;
+		notifyAll();
+	}
+
+	/**
+	 * Waits for a complete frame, then reserves the newest one for processing
+	 * 
+	 * @return the index of the slot to process, or -1 if finish() has been called
+	 *         and every frame has been taken
+	 * @throws InterruptedException if interrupted while waiting for a frame
+	 */
+	synchronized int takeLatest() throws InterruptedException {
+		while (latest == NONE) {
+			if (finished)
+				return NONE;
+			wait();
+		}
+		reading = latest;
+		latest = NONE;
+		return reading;
+	}
+
+	/**
+	 * Returns a slot to the ring after processing is done with it
+	 * 
+	 * @param slot the slot returned by takeLatest()
+	 */
+	synchronized void release(int slot) {
+		reading = NONE;
+	}
+
+	/**
+	 * Returns the frame stored in a slot. Only the thread that reserved the slot
+	 * may use it.
+	 * 
+	 * @param slot the index of the slot
+	 * @return the slot's frame
+	 */
+	Mat get(int slot) {
+		return frames[slot];
+	}
+
+	/**
+	 * Returns the timestamp grabFrame() gave the frame in a slot. Only the thread
+	 * that reserved the slot may use it.
+	 * 
+	 * @param slot the index of the slot
+	 * @return the timestamp, in microseconds
+	 */
+	synchronized long getCaptureMicros(int slot) {
+		return captureMicros[slot];
+	}
+
+	/**
+	 * Returns when the frame in a slot was grabbed. Only the thread that reserved
+	 * the slot may use it.
+	 * 
+	 * @param slot the index of the slot
+	 * @return the time, from System.nanoTime()
+	 */
+	synchronized long getCaptureNanos(int slot) {
+		return captureNanos[slot];
+	}
+
+	/**
+	 * Returns the number of frames published to the ring
+	 * 
+	 * @return the number of complete frames captured
+	 */
+	synchronized long getCapturedCount() {
+		return capturedCount;
+	}
+
+	/**
+	 * Returns the number of complete frames that were replaced by a newer frame
+	 * before they could be processed
+	 * 
+	 * @return the number of dropped frames
+	 */
+	synchronized long getDroppedCount() {
+		return droppedCount;
+	}
+}
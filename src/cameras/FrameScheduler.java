@@ -0,0 +1,180 @@
+package cameras;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Paces a frame loop at a fixed rate. Frame start times are laid out on a
+ * fixed grid (one slot every 1/fps seconds), and the time a frame took to
+ * process is subtracted from the wait before the next one, so processing time
+ * doesn't lower the achieved frame rate as long as it fits in one period.
+ * <br/>
+ * When a frame takes longer than a whole period, the OverrunPolicy decides
+ * what happens to the slots that were missed. <br/>
+ * The scheduler also measures the frame rate it actually achieves and how far
+ * frames start from their scheduled time (jitter). These may be read from any
+ * thread.
+ * 
+ * @author Jeff
+ *
+ */
+public class FrameScheduler {
+	/**
+	 * What to do when processing a frame overruns into the next frame's slot
+	 */
+	public enum OverrunPolicy {
+		/**
+		 * Drop the slots that were missed and wait for the next slot on the original
+		 * grid. Keeps frames evenly spaced at the cost of frame rate.
+		 */
+		SKIP,
+		/**
+		 * Run the missed slots immediately, one after another, until the loop is back
+		 * on schedule. Keeps the average frame rate at the cost of bursts.
+		 */
+		CATCH_UP,
+		/**
+		 * Start the next frame immediately and restart the grid from there. Never
+		 * bursts or waits after a slow frame.
+		 */
+		BACK_TO_BACK
+	}
+
+	private static final double SMOOTHING = 0.1; // Weight of the newest frame in the running averages
+
+	private final long periodNanos; // Time between scheduled frame starts
+	private volatile OverrunPolicy overrunPolicy;
+	private long nextDeadline; // System.nanoTime() at which the next frame should start
+	private long lastStart = -1; // System.nanoTime() at which the last frame started, -1 before the first
+
+	// Statistics. Written by the frame loop only, readable from any thread.
+	private volatile double averageInterval; // Smoothed time between frame starts, in nanoseconds
+	private volatile double averageJitter; // Smoothed |actual start - scheduled start|, in nanoseconds
+	private volatile long overrunCount; // Number of frames that started a whole period or more late
+
+	/**
+	 * Creates a scheduler
+	 * 
+	 * @param framesPerSecond the rate to run frames at
+	 * @param policy          what to do when a frame overruns its slot
+	 */
+	public FrameScheduler(double framesPerSecond, OverrunPolicy policy) {
+		if (framesPerSecond <= 0)
+			throw new IllegalArgumentException("Frame rate must be positive, was " + framesPerSecond);
+		this.periodNanos = (long) (1e9 / framesPerSecond);
+		this.overrunPolicy = policy;
+		this.averageInterval = periodNanos;
+	}
+
+	/**
+	 * Starts the schedule. The first frame is scheduled immediately.
+	 */
+	public void start() {
+		nextDeadline = System.nanoTime();
+		lastStart = -1;
+	}
+
+	/**
+	 * Blocks until the next frame is due, then records statistics for it. Call
+	 * once at the top of every iteration of the frame loop, after start().
+	 * 
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	public void awaitNextFrame() throws InterruptedException {
+		long late = System.nanoTime() - nextDeadline;
+		if (late >= periodNanos) {
+			overrunCount++;
+			switch (overrunPolicy) {
+			case SKIP:
+				nextDeadline += (late / periodNanos + 1) * periodNanos;
+				break;
+			case CATCH_UP:
+				break;
+			case BACK_TO_BACK:
+				nextDeadline = System.nanoTime();
+				break;
+			}
+		}
+		sleepUntil(nextDeadline);
+
+		long start = System.nanoTime();
+		averageJitter += SMOOTHING * (Math.abs(start - nextDeadline) - averageJitter);
+		if (lastStart >= 0) {
+			averageInterval += SMOOTHING * ((start - lastStart) - averageInterval);
+		}
+		lastStart = start;
+		nextDeadline += periodNanos;
+	}
+
+	/**
+	 * Parks the current thread until System.nanoTime() reaches the given value
+	 * 
+	 * @param deadline the time to wake up at
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	private static void sleepUntil(long deadline) throws InterruptedException {
+		long remaining;
+		while ((remaining = deadline - System.nanoTime()) > 0) {
+			LockSupport.parkNanos(remaining);
+			if (Thread.interrupted())
+				throw new InterruptedException();
+		}
+	}
+
+	/**
+	 * Sets the policy for frames that overrun their slot. Takes effect on the
+	 * next frame.
+	 * 
+	 * @param policy the new policy
+	 */
+	public void setOverrunPolicy(OverrunPolicy policy) {
+		this.overrunPolicy = policy;
+	}
+
+	/**
+	 * Returns the policy for frames that overrun their slot
+	 * 
+	 * @return the current overrun policy
+	 */
+	public OverrunPolicy getOverrunPolicy() {
+		return overrunPolicy;
+	}
+
+	/**
+	 * Returns the configured frame rate
+	 * 
+	 * @return the number of frames per second the scheduler aims for
+	 */
+	public double getTargetFPS() {
+		return 1e9 / periodNanos;
+	}
+
+	/**
+	 * Returns the frame rate actually being achieved, averaged over roughly the
+	 * last ten frames
+	 * 
+	 * @return the achieved frames per second
+	 */
+	public double getAchievedFPS() {
+		return 1e9 / averageInterval;
+	}
+
+	/**
+	 * Returns how far frames have been starting from their scheduled time,
+	 * averaged over roughly the last ten frames
+	 * 
+	 * @return the average jitter, in milliseconds
+	 */
+	public double getJitterMillis() {
+		return averageJitter / 1e6;
+	}
+
+	/**
+	 * Returns the number of frames that started a whole period or more after
+	 * their scheduled time
+	 * 
+	 * @return the number of overruns since the scheduler was created
+	 */
+	public long getOverrunCount() {
+		return overrunCount;
+	}
+}
@@ -0,0 +1,72 @@
+package cameras;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+/**
+ * The layout of the segment files FrameRecorder writes and ReplayCVCamera
+ * reads. A recording is a series of files named name-00000.frames,
+ * name-00001.frames and so on, each holding as many whole frames as fit. <br/>
+ * Each file starts with a header: a magic number, the format version, the
+ * number of frames in the file and the offset just past the last frame. Then
+ * come the frames, each as its capture timestamp, the System.nanoTime() it was
+ * captured at, its rows, columns and OpenCV type, the number of pixel bytes,
+ * and the pixel bytes themselves, padded to a multiple of 8 bytes. All numbers
+ * are little-endian. The header is updated after each frame is written, so a
+ * recording cut off part way through a frame still reads up to the frame
+ * before.
+ * 
+ * @author Jeff
+ *
+ */
+final class FrameSegments {
+	static final int MAGIC = 0x534d5246; // "FRMS"
+	static final int VERSION = 1;
+	static final int HEADER_BYTES = 32;
+	static final int FRAME_COUNT_OFFSET = 8, END_OFFSET = 16; // Positions of header fields
+	static final int FRAME_HEADER_BYTES = 32;
+	static final String EXTENSION = ".frames";
+
+	private FrameSegments() {
+	}
+
+	/**
+	 * Returns the file of one segment of a recording
+	 * 
+	 * @param directory the folder the recording is in
+	 * @param name      the name of the recording
+	 * @param index     the number of the segment, starting at 0
+	 * @return the segment's file
+	 */
+	static File segmentFile(File directory, String name, int index) {
+		return new File(directory, String.format("%s-%05d%s", name, index, EXTENSION));
+	}
+
+	/**
+	 * Lists the segments of a recording, in order
+	 * 
+	 * @param directory the folder the recording is in
+	 * @param name      the name of the recording
+	 * @return the segment files. Empty if there are none.
+	 */
+	static File[] list(File directory, String name) {
+		Pattern segmentName = Pattern.compile(Pattern.quote(name) + "-\\d{5,}" + Pattern.quote(EXTENSION));
+		File[] files = directory.listFiles(f -> f.isFile() && segmentName.matcher(f.getName()).matches());
+		if (files == null)
+			return new File[0];
+		Arrays.sort(files);
+		return files;
+	}
+
+	/**
+	 * Returns the space a frame takes in a segment, including its header and
+	 * padding
+	 * 
+	 * @param pixelBytes the number of bytes of pixel data
+	 * @return the number of bytes
+	 */
+	static long frameBytes(long pixelBytes) {
+		return FRAME_HEADER_BYTES + ((pixelBytes + 7) & ~7L);
+	}
+}
@@ -0,0 +1,303 @@
+package cameras;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.ToDoubleFunction;
+
+import processing.Sighting;
+import processing.Track;
+import processing.VisionTarget;
+
+/**
+ * An immutable record of everything a camera found in one processed frame.
+ * <br/>
+ * A camera builds a new snapshot after it has finished processing a frame and
+ * publishes it all at once, so a reader holding a snapshot always sees the
+ * sightings of every target from the same frame, even while the camera is
+ * already working on the next one. Reading a snapshot never locks. <br/>
+ * Each target's sightings are also sorted by robot-based yaw and distance when
+ * the snapshot is built, so queries such as closest(), nearestYaw() and
+ * withinDistance() don't sort or copy anything, however many times they are
+ * called on the same frame.
+ * 
+ * @author Jeff
+ *
+ */
+public final class FrameSnapshot {
+	// The snapshot cameras report before their first frame has been processed
+	static final FrameSnapshot EMPTY = new FrameSnapshot(null, 0, new FrameTiming(0, 0, 0, 0, 0), Collections.emptyMap(),
+			Collections.emptyMap());
+
+	private final CVCamera camera; // The camera that published the frame, null for EMPTY
+	private final long sequence; // The number of frames the camera had published, including this one
+	private final FrameTiming timing;
+	private final Map<VisionTarget, SightingIndex> sightings; // Read-only, sorted sightings of each target
+	private final Map<VisionTarget, List<Track>> tracks; // Read-only tracks of each tracked target
+
+	/**
+	 * Creates a snapshot of a processed frame
+	 * 
+	 * @param camera    the camera that processed the frame
+	 * @param sequence  the frame sequence number, which must be greater than the
+	 *                  previous snapshot's
+	 * @param timing    when the frame was captured, processed and published
+	 * @param sightings the sightings of each target. Neither the map nor the lists
+	 *                  in it may be modified after being passed in.
+	 * @param tracks    the tracks of each target, with the same rules as sightings
+	 */
+	FrameSnapshot(CVCamera camera, long sequence, FrameTiming timing, Map<VisionTarget, List<Sighting>> sightings,
+			Map<VisionTarget, List<Track>> tracks) {
+		this.camera = camera;
+		this.sequence = sequence;
+		this.timing = timing;
+		Map<VisionTarget, SightingIndex> indices = new HashMap<>(sightings.size() * 2);
+		for (Map.Entry<VisionTarget, List<Sighting>> entry : sightings.entrySet()) {
+			indices.put(entry.getKey(), new SightingIndex(entry.getValue()));
+		}
+		this.sightings = Collections.unmodifiableMap(indices);
+		this.tracks = Collections.unmodifiableMap(tracks);
+	}
+
+	/**
+	 * Returns the camera that published this frame. Sequence numbers are only
+	 * comparable between frames of the same camera.
+	 * 
+	 * @return the camera, or null if no frame has been processed yet
+	 */
+	public CVCamera getCamera() {
+		return camera;
+	}
+
+	/**
+	 * Returns the sequence number of this frame. The first frame a camera
+	 * publishes is 1, and each frame after that is one higher, so comparing
+	 * sequence numbers tells whether a new frame has arrived.
+	 * 
+	 * @return the frame sequence number, or 0 if no frame has been processed yet
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * Returns when this frame was captured, processed and published. Use the
+	 * capture time to line sightings up with what the robot was doing when the
+	 * frame was taken.
+	 * 
+	 * @return the frame's timing. All times are 0 if no frame has been processed
+	 *         yet.
+	 */
+	public FrameTiming getTiming() {
+		return timing;
+	}
+
+	/**
+	 * Returns whether this frame has any sightings stored for the given target,
+	 * i.e. whether some pipeline was looking for it.
+	 * 
+	 * @param vt the vision target to check
+	 * @return true if the target was searched for in this frame
+	 */
+	public boolean hasTarget(VisionTarget vt) {
+		return sightings.containsKey(vt);
+	}
+
+	/**
+	 * Returns the targets that were searched for in this frame
+	 * 
+	 * @return a read-only set of targets
+	 */
+	public Set<VisionTarget> getTargets() {
+		return sightings.keySet();
+	}
+
+	/**
+	 * Returns all validated sightings of a given target in this frame
+	 * 
+	 * @param vt the specified vision target
+	 * @return a read-only list of the sightings. Empty if the target was not
+	 *         searched for.
+	 */
+	public List<Sighting> getSightings(VisionTarget vt) {
+		SightingIndex index = sightings.get(vt);
+		return index == null ? Collections.emptyList() : index.getSightings();
+	}
+
+	/**
+	 * Gives the number of sightings of a target in this frame
+	 * 
+	 * @param vt the vision target to check
+	 * @return the number of sightings identified
+	 */
+	public int sightingCount(VisionTarget vt) {
+		SightingIndex index = sightings.get(vt);
+		return index == null ? 0 : index.getSightings().size();
+	}
+
+	/**
+	 * Returns the best sighting of a target according to a comparator, i.e. the
+	 * one that would come first if the sightings were sorted with it
+	 * 
+	 * @param vt         the vision target to check
+	 * @param comparator orders sightings from best to worst
+	 * @return the best sighting, or an empty Optional if there are none
+	 */
+	public Optional<Sighting> best(VisionTarget vt, Comparator<? super Sighting> comparator) {
+		Sighting best = null;
+		for (Sighting sighting : getSightings(vt)) {
+			if (best == null || comparator.compare(sighting, best) < 0)
+				best = sighting;
+		}
+		return Optional.ofNullable(best);
+	}
+
+	/**
+	 * Returns the sightings of a target with the highest scores, highest first
+	 * 
+	 * @param vt    the vision target to check
+	 * @param k     the most sightings to return
+	 * @param score scores each sighting. Higher is better.
+	 * @return a new list of at most k sightings. Sightings with equal scores keep
+	 *         their published order.
+	 */
+	public List<Sighting> topK(VisionTarget vt, int k, ToDoubleFunction<? super Sighting> score) {
+		List<Sighting> all = getSightings(vt);
+		int count = Math.min(k, all.size());
+		if (count <= 0)
+			return Collections.emptyList();
+		// Keep the best count sightings seen so far in order, inserting each new one
+		// in place
+		Sighting[] top = new Sighting[count];
+		double[] scores = new double[count];
+		int filled = 0;
+		for (Sighting sighting : all) {
+			double value = score.applyAsDouble(sighting);
+			if (filled == count && !(value > scores[count - 1]))
+				continue;
+			int i = filled < count ? filled++ : count - 1;
+			while (i > 0 && value > scores[i - 1]) {
+				top[i] = top[i - 1];
+				scores[i] = scores[i - 1];
+				i--;
+			}
+			top[i] = sighting;
+			scores[i] = value;
+		}
+		List<Sighting> result = new ArrayList<>(filled);
+		for (int i = 0; i < filled; i++)
+			result.add(top[i]);
+		return result;
+	}
+
+	/**
+	 * Returns the sighting of a target closest to the robot
+	 * 
+	 * @param vt the vision target to check
+	 * @return the sighting with the smallest robot-based distance, or an empty
+	 *         Optional if no sighting has one
+	 */
+	public Optional<Sighting> closest(VisionTarget vt) {
+		SightingIndex index = sightings.get(vt);
+		return Optional.ofNullable(index == null ? null : index.closest());
+	}
+
+	/**
+	 * Returns the sighting of a target whose robot-based yaw is closest to a
+	 * given yaw. Pass 0 for the sighting nearest to straight ahead.
+	 * 
+	 * @param vt  the vision target to check
+	 * @param yaw the yaw to compare to, in radians
+	 * @return the sighting, or an empty Optional if no sighting has a yaw
+	 */
+	public Optional<Sighting> nearestYaw(VisionTarget vt, double yaw) {
+		SightingIndex index = sightings.get(vt);
+		return Optional.ofNullable(index == null ? null : index.nearestYaw(yaw));
+	}
+
+	/**
+	 * Returns the sightings of a target, closest to the robot first. Sightings
+	 * without a robot-based distance are left out.
+	 * 
+	 * @param vt the vision target to check
+	 * @return a read-only view of the sightings
+	 */
+	public List<Sighting> byDistance(VisionTarget vt) {
+		SightingIndex index = sightings.get(vt);
+		return index == null ? Collections.emptyList() : index.byDistance();
+	}
+
+	/**
+	 * Returns the sightings of a target from left to right, by robot-based yaw.
+	 * Sightings without a robot-based yaw are left out.
+	 * 
+	 * @param vt the vision target to check
+	 * @return a read-only view of the sightings
+	 */
+	public List<Sighting> byYaw(VisionTarget vt) {
+		SightingIndex index = sightings.get(vt);
+		return index == null ? Collections.emptyList() : index.byYaw();
+	}
+
+	/**
+	 * Returns the sightings of a target with a robot-based yaw in a range, from
+	 * left to right
+	 * 
+	 * @param vt  the vision target to check
+	 * @param min the lowest yaw to include, in radians
+	 * @param max the highest yaw to include, in radians
+	 * @return a read-only view of the sightings
+	 */
+	public List<Sighting> withinYaw(VisionTarget vt, double min, double max) {
+		SightingIndex index = sightings.get(vt);
+		return index == null ? Collections.emptyList() : index.withinYaw(min, max);
+	}
+
+	/**
+	 * Returns the sightings of a target with a robot-based distance in a range,
+	 * closest first
+	 * 
+	 * @param vt  the vision target to check
+	 * @param min the lowest distance to include
+	 * @param max the highest distance to include
+	 * @return a read-only view of the sightings
+	 */
+	public List<Sighting> withinDistance(VisionTarget vt, double min, double max) {
+		SightingIndex index = sightings.get(vt);
+		return index == null ? Collections.emptyList() : index.withinDistance(min, max);
+	}
+
+	/**
+	 * Returns the tracks of a target after this frame (see
+	 * VisionTarget.enableTracking()). Tracks keep their IDs from frame to frame.
+	 * 
+	 * @param vt the vision target to check
+	 * @return a read-only list of tracks, oldest first. Empty if the target is not
+	 *         tracked.
+	 */
+	public List<Track> getTracks(VisionTarget vt) {
+		List<Track> list = tracks.get(vt);
+		return list == null ? Collections.emptyList() : list;
+	}
+
+	/**
+	 * Finds a track of a target by its ID
+	 * 
+	 * @param vt the vision target to check
+	 * @param id the ID of the track
+	 * @return the track, or an empty Optional if the target has no live track
+	 *         with that ID
+	 */
+	public Optional<Track> getTrack(VisionTarget vt, long id) {
+		for (Track track : getTracks(vt)) {
+			if (track.getId() == id)
+				return Optional.of(track);
+		}
+		return Optional.empty();
+	}
+}
@@ -0,0 +1,70 @@
+package cameras;
+
+import org.opencv.core.Mat;
+
+/**
+ * Somewhere frames come from, such as a camera, a folder of images or a video
+ * file. CVCameras grab every frame they process from a frame source, so the
+ * same pipelines and targets can run on a robot, on recorded footage, or on a
+ * machine with no camera attached. <br/>
+ * A frame source is only used by one thread at a time.
+ * 
+ * @author Jeff
+ *
+ */
+public interface FrameSource {
+	/**
+	 * Grabs the next frame into the given image, waiting for it if needed. The
+	 * image is reallocated if its size or type doesn't match the frame.
+	 * 
+	 * @param image the image to store the frame in
+	 * @return the time of the frame, in microseconds, or 0 if no frame could be
+	 *         grabbed (see getError())
+	 */
+	public long grabFrame(Mat image);
+
+	/**
+	 * Returns why the last call to grabFrame() failed
+	 * 
+	 * @return a description of the error
+	 */
+	public String getError();
+
+	/**
+	 * Returns the name of the source, used to name the threads that read it
+	 * 
+	 * @return the name
+	 */
+	public String getName();
+
+	/**
+	 * Returns whether the source has run out of frames for good. Cameras stop
+	 * grabbing from a source once it has. Live sources never run out.
+	 * 
+	 * @return true if grabFrame() will never return another frame
+	 */
+	public default boolean isFinished() {
+		return false;
+	}
+
+	/**
+	 * Returns whether frames are captured as they are grabbed, as they are from a
+	 * camera. Cameras treat a live source's frames as captured when grabbing
+	 * them returned. Frames from other sources, such as saved footage, are timed
+	 * by their timestamps instead, counting from when the first frame was
+	 * grabbed, so tracking and history see the time between frames that the
+	 * source gives them. Their latencies (see FrameTiming) only mean something
+	 * if frames are grabbed no faster than the source's frame rate.
+	 * 
+	 * @return true if frames are captured as they are grabbed
+	 */
+	public default boolean isLive() {
+		return true;
+	}
+
+	/**
+	 * Releases anything the source holds open
+	 */
+	public default void close() {
+	}
+}
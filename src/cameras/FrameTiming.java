@@ -0,0 +1,129 @@
+package cameras;
+
+/**
+ * When a frame was captured, processed and published. Every processed frame
+ * has one, available from its FrameSnapshot and from each of its sightings.
+ * <br/>
+ * All times except getCaptureTimestampMicros() come from System.nanoTime(), so
+ * they can be compared with each other and with robot code timing. The capture
+ * time is when grabbing the frame returned, which is the closest this library
+ * can get to the moment of exposure on that clock.
+ * 
+ * @author Jeff
+ *
+ */
+public final class FrameTiming {
+	private final long captureTimestampMicros; // From the camera library's clock, 0 if unknown
+	private final long captureNanos, processStartNanos, processEndNanos, publishNanos;
+
+	/**
+	 * Records the timing of a frame
+	 * 
+	 * @param captureTimestampMicros the timestamp grabFrame() returned, or 0 if
+	 *                               unknown
+	 * @param captureNanos           when grabbing the frame returned
+	 * @param processStartNanos      when processing the frame started
+	 * @param processEndNanos        when every pipeline and target was done with
+	 *                               the frame
+	 * @param publishNanos           when the frame's results were published
+	 */
+	FrameTiming(long captureTimestampMicros, long captureNanos, long processStartNanos, long processEndNanos,
+			long publishNanos) {
+		this.captureTimestampMicros = captureTimestampMicros;
+		this.captureNanos = captureNanos;
+		this.processStartNanos = processStartNanos;
+		this.processEndNanos = processEndNanos;
+		this.publishNanos = publishNanos;
+	}
+
+	/**
+	 * Returns the timestamp the camera library gave the frame. Its clock differs
+	 * from System.nanoTime(); use it to line frames up with other camera
+	 * library timestamps.
+	 * 
+	 * @return the timestamp in microseconds, or 0 if the source did not give one
+	 */
+	public long getCaptureTimestampMicros() {
+		return captureTimestampMicros;
+	}
+
+	/**
+	 * Returns when the frame was captured
+	 * 
+	 * @return the time, from System.nanoTime()
+	 */
+	public long getCaptureNanos() {
+		return captureNanos;
+	}
+
+	/**
+	 * Returns when processing the frame started
+	 * 
+	 * @return the time, from System.nanoTime()
+	 */
+	public long getProcessStartNanos() {
+		return processStartNanos;
+	}
+
+	/**
+	 * Returns when processing the frame finished
+	 * 
+	 * @return the time, from System.nanoTime()
+	 */
+	public long getProcessEndNanos() {
+		return processEndNanos;
+	}
+
+	/**
+	 * Returns when the frame's results were published
+	 * 
+	 * @return the time, from System.nanoTime()
+	 */
+	public long getPublishNanos() {
+		return publishNanos;
+	}
+
+	/**
+	 * Returns how long the frame waited between being captured and being
+	 * processed
+	 * 
+	 * @return the time, in nanoseconds
+	 */
+	public long getQueueNanos() {
+		return processStartNanos - captureNanos;
+	}
+
+	/**
+	 * Returns how long processing the frame took
+	 * 
+	 * @return the time, in nanoseconds
+	 */
+	public long getProcessingNanos() {
+		return processEndNanos - processStartNanos;
+	}
+
+	/**
+	 * Returns the time from capturing the frame to publishing its results. This
+	 * is how old the frame's sightings already were when they became available.
+	 * 
+	 * @return the latency, in nanoseconds
+	 */
+	public long getLatencyNanos() {
+		return publishNanos - captureNanos;
+	}
+
+	/**
+	 * Returns how long ago the frame was captured
+	 * 
+	 * @return the age, in nanoseconds
+	 */
+	public long getAgeNanos() {
+		return System.nanoTime() - captureNanos;
+	}
+
+	@Override
+	public String toString() {
+		return "FrameTiming [latency=" + getLatencyNanos() / 1e6 + "ms, processing=" + getProcessingNanos() / 1e6
+				+ "ms]";
+	}
+}
@@ -0,0 +1,153 @@
+package cameras;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Locale;
+
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+
+/**
+ * Grabs frames from the images in a folder, in order of file name. Useful for
+ * running pipelines on saved frames without a camera, and for checking that
+ * they find the same sightings every time. <br/>
+ * Frames are given times as if they had been captured at a fixed frame rate,
+ * and cameras process them on that timeline (see isLive()). Images are decoded
+ * as they are grabbed, unless preload() has been called to decode them all
+ * first, which keeps decoding out of timings of the pipelines.
+ * 
+ * @author Jeff
+ *
+ */
+public class ImageFolderFrameSource implements FrameSource {
+	private static final String[] EXTENSIONS = { ".png", ".jpg", ".jpeg", ".bmp", ".tif", ".tiff", ".ppm", ".pgm" };
+
+	private final File[] files;
+	private final String name;
+	private final long frameMicros; // Time between frames
+	private final boolean loop;
+	private Mat[] decoded; // Every image, if preloaded
+	private int next = 0; // Index of the next image
+	private long timestamp = 0; // Time of the last frame grabbed
+	private String error = "";
+
+	/**
+	 * Creates a source that grabs each image in a folder once, as if captured at
+	 * 30 frames per second
+	 * 
+	 * @param folder the folder of images
+	 */
+	public ImageFolderFrameSource(File folder) {
+		this(folder, 30, false);
+	}
+
+	/**
+	 * Creates a source that grabs the images in a folder
+	 * 
+	 * @param folder          the folder of images. Files that aren't images are
+	 *                        skipped.
+	 * @param framesPerSecond the frame rate to give the images times for
+	 * @param loop            whether to start over from the first image after the
+	 *                        last one. Otherwise the source finishes after the last
+	 *                        image.
+	 */
+	public ImageFolderFrameSource(File folder, double framesPerSecond, boolean loop) {
+		if (!(framesPerSecond > 0))
+			throw new IllegalArgumentException("Frame rate must be positive, was given " + framesPerSecond);
+		File[] listed = folder.listFiles(f -> f.isFile() && isImage(f.getName()));
+		if (listed == null)
+			throw new IllegalArgumentException(folder + " is not a readable folder");
+		Arrays.sort(listed);
+		this.files = listed;
+		this.name = folder.getName();
+		this.frameMicros = Math.max(1, Math.round(1e6 / framesPerSecond));
+		this.loop = loop;
+	}
+
+	/**
+	 * Decodes every image now, so grabbing a frame is only a copy. Uses as much
+	 * memory as every frame together.
+	 */
+	public void preload() {
+		Mat[] images = new Mat[files.length];
+		for (int i = 0; i < files.length; i++)
+			images[i] = Imgcodecs.imread(files[i].getPath(), Imgcodecs.IMREAD_COLOR);
+		decoded = images;
+	}
+
+	@Override
+	public long grabFrame(Mat image) {
+		if (isFinished()) {
+			error = files.length == 0 ? "No images in folder " + name : "No images left in folder " + name;
+			return 0;
+		}
+		int index = next++ % files.length;
+		Mat frame = decoded != null ? decoded[index] : Imgcodecs.imread(files[index].getPath(), Imgcodecs.IMREAD_COLOR);
+		timestamp += frameMicros;
+		if (frame == null || frame.empty()) {
+			error = "Could not read image " + files[index];
+			return 0;
+		}
+		frame.copyTo(image);
+		if (decoded == null)
+			frame.release();
+		return timestamp;
+	}
+
+	@Override
+	public String getError() {
+		return error;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public boolean isFinished() {
+		return files.length == 0 || (!loop && next >= files.length);
+	}
+
+	@Override
+	public boolean isLive() {
+		return false;
+	}
+
+	@Override
+	public void close() {
+		if (decoded != null) {
+			for (Mat image : decoded)
+				if (image != null)
+					image.release();
+			decoded = null;
+		}
+	}
+
+	/**
+	 * Returns the number of images in the folder
+	 * 
+	 * @return the number of images
+	 */
+	public int getImageCount() {
+		return files.length;
+	}
+
+	/**
+	 * Returns the file of the last image grabbed, so sightings can be matched up
+	 * with the image they came from
+	 * 
+	 * @return the file, or null if no image has been grabbed yet
+	 */
+	public File getCurrentFile() {
+		return next == 0 || files.length == 0 ? null : files[(next - 1) % files.length];
+	}
+
+	private static boolean isImage(String fileName) {
+		String lower = fileName.toLowerCase(Locale.ROOT);
+		for (String extension : EXTENSIONS)
+			if (lower.endsWith(extension))
+				return true;
+		return false;
+	}
+}
@@ -2,17 +2,12 @@ package cameras;
 
 import static java.lang.Thread.interrupted;
 
-import java.util.ArrayList;
-
 import org.opencv.core.Mat;
-import org.opencv.core.MatOfPoint;
 
-import edu.wpi.cscore.CvSink;
 import edu.wpi.cscore.VideoSource;
 import edu.wpi.first.wpilibj.CameraServer;
 import processing.Pipeline;
-import processing.Sighting;
-import processing.SightingContainer;
+import processing.PipelineFactory;
 
 /**
  * A camera that processes a frame each time the updateSightings() method is
@@ -27,9 +22,9 @@ import processing.SightingContainer;
  *
  */
 public class ManualCVCamera extends CVCamera {
-	ArrayList<Pipeline> pipelines = new ArrayList<>();
+	private final FrameProcessor processor = new FrameProcessor(this); // Runs pipelines on grabbed frames
 	boolean initialized = false; // whether or not the camera has been initialized
-	CvSink sink; //Set when camera initialized
+	FrameSource source; //Set when camera initialized
 	/**
 	 * Instantiates the ManualCVCamera object
 	 * 
@@ -61,7 +56,46 @@ public class ManualCVCamera extends CVCamera {
 	 * @param p the pipeline to add.
 	 */
 	public void addPipeline(Pipeline p) {
-		pipelines.add(p);
+		processor.addPipeline(p);
+	}
+
+	/**
+	 * Adds a pipeline that processes the images the CVCamera takes, using a
+	 * separate instance of it on each thread that processes frames. Prefer this
+	 * over addPipeline(Pipeline) when pipelines run in parallel or frames are
+	 * processed from more than one thread.
+	 * 
+	 * @param factory creates the pipeline instances. Each instance must have its
+	 *                own supported targets set up.
+	 */
+	public void addPipeline(PipelineFactory factory) {
+		processor.addPipeline(factory);
+	}
+
+	/**
+	 * Sets how this camera's pipelines are run on each frame. With
+	 * PipelineExecution.PARALLEL, the pipelines run at the same time on up to one
+	 * thread per available processor, and a frame's sightings are published once
+	 * the slowest pipeline finishes. Must not be called while a frame is being
+	 * processed.
+	 * 
+	 * @param execution sequential (the default) or parallel execution
+	 */
+	public void setPipelineExecution(PipelineExecution execution) {
+		processor.setExecution(execution, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Sets how this camera's pipelines are run on each frame, limiting parallel
+	 * execution to a given number of threads. Must not be called while a frame is
+	 * being processed.
+	 * 
+	 * @param execution  sequential (the default) or parallel execution
+	 * @param maxThreads the most threads to run pipelines on at once, including
+	 *                   the thread that grabbed the frame
+	 */
+	public void setPipelineExecution(PipelineExecution execution, int maxThreads) {
+		processor.setExecution(execution, maxThreads);
 	}
 
 	/**
@@ -75,12 +109,21 @@ public class ManualCVCamera extends CVCamera {
 	 * @param name   the name of the CVCamera stream
 	 */
 	public void initializeCamera(VideoSource source, String name) {
-		sink= new CvSink(name);
-		sink.setSource(source);
-		sink.setEnabled(true);
+		this.source = new CvSinkFrameSource(source, name);
 		CameraServer.getInstance().startAutomaticCapture(source);
 	}
 
+	/**
+	 * Initializes the CVCamera with a given frame source, such as a folder of
+	 * images or a video file, instead of a cscore camera. No stream is started.
+	 * updateSightings() returns once the source is finished.
+	 * 
+	 * @param source the source for frames of the CVCamera
+	 */
+	public void initializeCamera(FrameSource source) {
+		this.source = source;
+	}
+
 	/**
 	 * MUST BE CALLED PERIODICALLY IN ORDER TO FIND SIGHTINGS<br/>
 	 * Grabs a frame from the video source, runs it through any pipelines that have
@@ -90,9 +133,18 @@ public class ManualCVCamera extends CVCamera {
 	public void updateSightings() {
 		try {
 			Mat sourceMat = new Mat();
-			while (!interrupted()) {
-				sink.grabFrame(sourceMat);
-				process(sourceMat);
+			FrameClock clock = new FrameClock(source);
+			while (!interrupted() && !source.isFinished()) {
+				long grabStart = System.nanoTime();
+				long timestamp = source.grabFrame(sourceMat);
+				long grabbed = getMetrics().end("grab", grabStart);
+				if (timestamp == 0) {
+					getMetrics().counter("grabErrors").incrementAndGet();
+					if (!source.isFinished()) // Reaching the end of the source isn't a problem
+						System.err.println("Problem grabbing ManualCVCamera frame: " + source.getError());
+					continue;
+				}
+				processor.process(sourceMat, timestamp, clock.captureNanos(timestamp, grabbed));
 			}
 		} catch (Exception e) {
 			System.err.println("Error processing ManualCVCamera frame");
@@ -100,24 +152,4 @@ public class ManualCVCamera extends CVCamera {
 		}
 
 	}
-
-	/**
-	 * Takes a frame that was grabbed by the Camera and runs the camera's
-	 * CVPipelines on that frame, finding and storing sightings to the pipelines'
-	 * supported targets
-	 * 
-	 * @param Source the captured frame
-	 */
-	private void process(Mat source) {
-		for (Pipeline pipeline : pipelines) {
-			ArrayList<Sighting> sightings = new ArrayList<Sighting>();
-			ArrayList<MatOfPoint> mats = pipeline.process(source);
-			mats.forEach(mop -> sightings.add(new Sighting(mop)));
-
-			pipeline.getSupportedTargets().forEach(target -> {
-				activeTargets.putIfAbsent(target, new SightingContainer(this, target));
-				activeTargets.get(target).updateObjects((ArrayList<Sighting>) sightings.clone());
-			});
-		}
-	}
 }
\ No newline at end of file
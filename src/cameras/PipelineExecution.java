@@ -0,0 +1,21 @@
+package cameras;
+
+/**
+ * How a camera runs its pipelines on each frame
+ * 
+ * @author Jeff
+ *
+ */
+public enum PipelineExecution {
+	/**
+	 * Pipelines run one after another on the thread that grabbed the frame.
+	 * Frame latency is the sum of every pipeline's processing time.
+	 */
+	SEQUENTIAL,
+	/**
+	 * Pipelines run at the same time on a bounded pool of worker threads, all
+	 * reading the same source frame. Frame latency is roughly that of the slowest
+	 * pipeline. Each pipeline instance is still only used by one thread at a time.
+	 */
+	PARALLEL
+}
@@ -0,0 +1,247 @@
+package cameras;
+
+import static java.lang.Thread.interrupted;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+import org.opencv.core.Mat;
+
+import processing.Pipeline;
+import processing.PipelineFactory;
+
+/**
+ * A camera that replays frames recorded by a FrameRecorder, running them
+ * through its pipelines and targets exactly as a live camera would. <br/>
+ * The recording's segment files are memory-mapped, so frames are read straight
+ * from the operating system's file cache and never decoded. Each frame is
+ * copied out of the mapping into an array, then into a Mat, and both are reused
+ * from frame to frame. <br/>
+ * Frames can be replayed at the speed they were recorded or as fast as
+ * possible. Either way, a frame's capture time is its recorded capture time,
+ * shifted to when the replay started, so the speed of the replay doesn't
+ * change the sightings or tracks found.
+ * 
+ * @author Jeff
+ *
+ */
+public class ReplayCVCamera extends CVCamera {
+	/**
+	 * How fast recorded frames are replayed
+	 */
+	public enum ReplaySpeed {
+		/**
+		 * Each frame is processed when it would have been captured, relative to the
+		 * first frame.
+		 */
+		REAL_TIME,
+		/**
+		 * Each frame is processed as soon as the one before it is done. Useful for
+		 * measuring throughput and for regression tests. Frames run ahead of the
+		 * recording's timeline, so their latencies (see FrameTiming) mean nothing.
+		 */
+		AS_FAST_AS_POSSIBLE
+	}
+
+	private final FrameProcessor processor = new FrameProcessor(this); // Runs pipelines on replayed frames
+	private final ArrayList<ByteBuffer> segments = new ArrayList<>(); // Mapped segment files, in order
+	private volatile ReplaySpeed speed = ReplaySpeed.REAL_TIME;
+	private String name; // Set when camera initialized
+	private long frameCount = 0; // Frames in the recording
+
+	/**
+	 * Instantiates the ReplayCVCamera object. The parameters should match the
+	 * camera the frames were recorded with.
+	 * 
+	 * @param refreshRate      the number of frames per second the recording was
+	 *                         made at
+	 * @param vFOV             the vertical FOV on the Camera in radians
+	 * @param hFOV             the horizontal FOV on the Camera in radians
+	 * @param xPixels          the number of pixels in the x direction (ex: 320)
+	 * @param yPixels          the number of pixels in the y direction (ex: 240)
+	 * @param horizontalOffset the distance from the center of the robot to the
+	 *                         center of the lens of the Camera (in the horizontal
+	 *                         direction) in arbitrary units
+	 * @param verticalOffset   the distance (in arbitrary units) from the ground to
+	 *                         the center of the Camera lens
+	 * @param depthOffset      the distance of the camera from the front of the
+	 *                         robot, in arbitrary units
+	 * @param hAngle           the horizontal placement angle of the Camera in
+	 *                         radians (is the camera facing left or right?)
+	 * @param vAngle           the vertical placement angle of the Camera in radians
+	 *                         (is the camera facing upwards or downwards?)
+	 */
+	public ReplayCVCamera(int refreshRate, double vFOV, double hFOV, double xPixels, double yPixels,
+			double horizontalOffset, double verticalOffset, double depthOffset, double hAngle, double vAngle) {
+		super(refreshRate, vFOV, hFOV, xPixels, yPixels, horizontalOffset, verticalOffset, depthOffset, hAngle, vAngle);
+	}
+
+	/**
+	 * Adds a pipeline that processes the replayed frames
+	 * 
+	 * @param p the pipeline to add.
+	 */
+	public void addPipeline(Pipeline p) {
+		processor.addPipeline(p);
+	}
+
+	/**
+	 * Adds a pipeline that processes the replayed frames, using a separate
+	 * instance of it on each thread that processes frames
+	 * 
+	 * @param factory creates the pipeline instances. Each instance must have its
+	 *                own supported targets set up.
+	 */
+	public void addPipeline(PipelineFactory factory) {
+		processor.addPipeline(factory);
+	}
+
+	/**
+	 * Sets how this camera's pipelines are run on each frame. Must not be called
+	 * while frames are being replayed.
+	 * 
+	 * @param execution sequential (the default) or parallel execution
+	 */
+	public void setPipelineExecution(PipelineExecution execution) {
+		processor.setExecution(execution, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Sets how this camera's pipelines are run on each frame, limiting parallel
+	 * execution to a given number of threads. Must not be called while frames are
+	 * being replayed.
+	 * 
+	 * @param execution  sequential (the default) or parallel execution
+	 * @param maxThreads the most threads to run pipelines on at once, including
+	 *                   the thread that replays frames
+	 */
+	public void setPipelineExecution(PipelineExecution execution, int maxThreads) {
+		processor.setExecution(execution, maxThreads);
+	}
+
+	/**
+	 * Sets how fast frames are replayed. Defaults to ReplaySpeed.REAL_TIME. May be
+	 * changed during a replay.
+	 * 
+	 * @param speed the replay speed
+	 */
+	public void setReplaySpeed(ReplaySpeed speed) {
+		this.speed = speed;
+	}
+
+	/**
+	 * Initializes the camera with a recording, mapping its segment files. Frames
+	 * are replayed by replay() or startReplay().
+	 * 
+	 * @param directory the folder the recording is in
+	 * @param name      the name the recording was made with
+	 * @throws IOException if a segment could not be mapped, or is not a segment
+	 *                     of a recording
+	 */
+	public void initializeCamera(File directory, String name) throws IOException {
+		ArrayList<ByteBuffer> mapped = new ArrayList<>();
+		long frames = 0;
+		for (File file : FrameSegments.list(directory, name)) {
+			try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+				MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+				segment.order(ByteOrder.LITTLE_ENDIAN);
+				if (segment.limit() < FrameSegments.HEADER_BYTES || segment.getInt(0) != FrameSegments.MAGIC)
+					throw new IOException(file + " is not a frame recording");
+				if (segment.getInt(4) != FrameSegments.VERSION)
+					throw new IOException(file + " was recorded in an unsupported format, version " + segment.getInt(4));
+				mapped.add(segment);
+				frames += segment.getInt(FrameSegments.FRAME_COUNT_OFFSET);
+			}
+		}
+		if (mapped.isEmpty())
+			throw new IOException("No recording named " + name + " in " + directory);
+		segments.clear();
+		segments.addAll(mapped);
+		frameCount = frames;
+		this.name = name;
+	}
+
+	/**
+	 * Replays every frame of the recording on the calling thread, then returns.
+	 * Stops early if the thread is interrupted.
+	 * 
+	 * @return the number of frames replayed
+	 */
+	public long replay() {
+		long replayed = 0;
+		long firstCapture = 0, replayStart = System.nanoTime();
+		Mat frame = new Mat();
+		byte[] pixels = new byte[0];
+		try {
+			for (ByteBuffer segment : segments) {
+				int frames = segment.getInt(FrameSegments.FRAME_COUNT_OFFSET);
+				int position = FrameSegments.HEADER_BYTES;
+				for (int i = 0; i < frames; i++) {
+					if (interrupted())
+						return replayed;
+					long timestamp = segment.getLong(position);
+					long recordedNanos = segment.getLong(position + 8);
+					int rows = segment.getInt(position + 16), cols = segment.getInt(position + 20);
+					int type = segment.getInt(position + 24), length = segment.getInt(position + 28);
+
+					// The frame's place on the recording's timeline, starting from when the
+					// replay started
+					if (replayed == 0)
+						firstCapture = recordedNanos;
+					long captureNanos = replayStart + (recordedNanos - firstCapture);
+					if (speed == ReplaySpeed.REAL_TIME) {
+						long wait;
+						while ((wait = captureNanos - System.nanoTime()) > 0 && !Thread.currentThread().isInterrupted())
+							LockSupport.parkNanos(wait);
+					}
+
+					if (pixels.length != length)
+						pixels = new byte[length];
+					ByteBuffer mapped = segment.duplicate();
+					mapped.position(position + FrameSegments.FRAME_HEADER_BYTES);
+					mapped.get(pixels);
+					frame.create(rows, cols, type);
+					frame.put(0, 0, pixels);
+					try {
+						processor.process(frame, timestamp, captureNanos);
+					} catch (Exception e) {
+						System.err.println("Problem processing ReplayCVCamera frame");
+						e.printStackTrace();
+					}
+					replayed++;
+					position += FrameSegments.frameBytes(length);
+				}
+			}
+		} finally {
+			frame.release();
+		}
+		return replayed;
+	}
+
+	/**
+	 * Replays every frame of the recording on a new thread
+	 * 
+	 * @return the thread, which finishes when the replay does
+	 */
+	public Thread startReplay() {
+		Thread thread = new Thread(this::replay, name + " replay");
+		thread.start();
+		return thread;
+	}
+
+	/**
+	 * Returns the number of frames in the recording
+	 * 
+	 * @return the number of frames
+	 */
+	public long getFrameCount() {
+		return frameCount;
+	}
+}
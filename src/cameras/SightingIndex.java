@@ -0,0 +1,232 @@
+package cameras;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import processing.Sighting;
+
+/**
+ * The sightings of one target in one frame, along with their order by
+ * robot-based yaw and by robot-based distance. The orders are sorted once, when
+ * the frame is published, and kept as arrays of indices next to the sorted
+ * values, so range and nearest queries are binary searches and their results
+ * are views rather than copies. <br/>
+ * Sightings without a value are left out of that value's order.
+ * 
+ * @author Jeff
+ *
+ */
+final class SightingIndex {
+	private final List<Sighting> sightings;
+	private final double[] yaws, distances; // Sorted, ascending
+	private final int[] byYaw, byDistance; // Index into sightings of each sorted value
+
+	/**
+	 * Sorts the sightings of a target
+	 * 
+	 * @param sightings the sightings, which must not be modified afterwards
+	 */
+	SightingIndex(List<Sighting> sightings) {
+		this.sightings = sightings;
+		int n = sightings.size();
+		double[] yaw = new double[n], distance = new double[n];
+		for (int i = 0; i < n; i++) {
+			Sighting s = sightings.get(i);
+			yaw[i] = s.robotBasedYaw();
+			distance[i] = s.robotBasedDistance();
+		}
+		byYaw = sortedIndices(yaw);
+		byDistance = sortedIndices(distance);
+		yaws = sortedValues(yaw, byYaw);
+		distances = sortedValues(distance, byDistance);
+	}
+
+	/**
+	 * Returns the sightings in the order they were published
+	 * 
+	 * @return a read-only list of the sightings
+	 */
+	List<Sighting> getSightings() {
+		return sightings;
+	}
+
+	/**
+	 * Returns the sightings that have a robot-based yaw, from left to right
+	 * 
+	 * @return a read-only view of the sightings
+	 */
+	List<Sighting> byYaw() {
+		return new View(sightings, byYaw, 0, byYaw.length);
+	}
+
+	/**
+	 * Returns the sightings that have a robot-based distance, closest first
+	 * 
+	 * @return a read-only view of the sightings
+	 */
+	List<Sighting> byDistance() {
+		return new View(sightings, byDistance, 0, byDistance.length);
+	}
+
+	/**
+	 * Returns the sightings with a robot-based yaw in a range, from left to right
+	 * 
+	 * @param min the lowest yaw to include, in radians
+	 * @param max the highest yaw to include, in radians
+	 * @return a read-only view of the sightings
+	 */
+	List<Sighting> withinYaw(double min, double max) {
+		return new View(sightings, byYaw, lowerBound(yaws, min), upperBound(yaws, max));
+	}
+
+	/**
+	 * Returns the sightings with a robot-based distance in a range, closest first
+	 * 
+	 * @param min the lowest distance to include
+	 * @param max the highest distance to include
+	 * @return a read-only view of the sightings
+	 */
+	List<Sighting> withinDistance(double min, double max) {
+		return new View(sightings, byDistance, lowerBound(distances, min), upperBound(distances, max));
+	}
+
+	/**
+	 * Returns the sighting with the robot-based yaw closest to a given yaw
+	 * 
+	 * @param yaw the yaw to compare to, in radians
+	 * @return the sighting, or null if no sighting has a yaw
+	 */
+	Sighting nearestYaw(double yaw) {
+		if (yaws.length == 0)
+			return null;
+		int i = lowerBound(yaws, yaw); // The first yaw at or right of the given one
+		if (i == yaws.length || (i > 0 && yaw - yaws[i - 1] <= yaws[i] - yaw))
+			i--;
+		return sightings.get(byYaw[i]);
+	}
+
+	/**
+	 * Returns the sighting closest to the robot
+	 * 
+	 * @return the sighting, or null if no sighting has a distance
+	 */
+	Sighting closest() {
+		return byDistance.length == 0 ? null : sightings.get(byDistance[0]);
+	}
+
+	/**
+	 * Returns the indices of the values that are not NaN, in ascending order of
+	 * value. Ties keep their original order.
+	 */
+	private static int[] sortedIndices(double[] values) {
+		int count = 0;
+		for (double value : values) {
+			if (!Double.isNaN(value))
+				count++;
+		}
+		int[] order = new int[count];
+		for (int i = 0, j = 0; i < values.length; i++) {
+			if (!Double.isNaN(values[i]))
+				order[j++] = i;
+		}
+		// Insertion sort. Frames rarely have more than a handful of sightings of a
+		// target, but fall back on a merge sort for cluttered ones.
+		if (count > 32) {
+			mergeSort(order, new int[count], values, 0, count);
+			return order;
+		}
+		for (int i = 1; i < count; i++) {
+			int index = order[i], j = i;
+			while (j > 0 && values[order[j - 1]] > values[index]) {
+				order[j] = order[j - 1];
+				j--;
+			}
+			order[j] = index;
+		}
+		return order;
+	}
+
+	/**
+	 * Sorts order[from, to) by value, using scratch as working space
+	 */
+	private static void mergeSort(int[] order, int[] scratch, double[] values, int from, int to) {
+		if (to - from < 2)
+			return;
+		int middle = (from + to) >>> 1;
+		mergeSort(order, scratch, values, from, middle);
+		mergeSort(order, scratch, values, middle, to);
+		System.arraycopy(order, from, scratch, from, to - from);
+		for (int i = from, a = from, b = middle; i < to; i++) {
+			if (b >= to || (a < middle && values[scratch[a]] <= values[scratch[b]]))
+				order[i] = scratch[a++];
+			else
+				order[i] = scratch[b++];
+		}
+	}
+
+	private static double[] sortedValues(double[] values, int[] order) {
+		double[] sorted = new double[order.length];
+		for (int i = 0; i < order.length; i++)
+			sorted[i] = values[order[i]];
+		return sorted;
+	}
+
+	/**
+	 * Returns the index of the first value at least the given one
+	 */
+	private static int lowerBound(double[] sorted, double value) {
+		int low = 0, high = sorted.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (sorted[middle] < value)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the index after the last value at most the given one
+	 */
+	private static int upperBound(double[] sorted, double value) {
+		int low = 0, high = sorted.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (sorted[middle] <= value)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	/**
+	 * A read-only view of a range of sightings in a sorted order
+	 */
+	private static final class View extends AbstractList<Sighting> implements RandomAccess {
+		private final List<Sighting> sightings;
+		private final int[] order;
+		private final int from, size;
+
+		View(List<Sighting> sightings, int[] order, int from, int to) {
+			this.sightings = sightings;
+			this.order = order;
+			this.from = from;
+			this.size = Math.max(0, to - from);
+		}
+
+		@Override
+		public Sighting get(int index) {
+			if (index < 0 || index >= size)
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			return sightings.get(order[from + index]);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+}
@@ -0,0 +1,620 @@
+package cameras;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+import math.CameraMath;
+import math.CameraModel;
+import processing.Pipeline;
+import processing.PipelineFactory;
+import processing.VisionTarget;
+
+/**
+ * A camera that draws its own frames, showing vision targets at known places
+ * around the robot, and processes them like any other camera. Since the real
+ * position of every target is known, it gives both repeatable workloads for
+ * measuring throughput and ground truth to check sightings against (see
+ * getGroundTruth()). <br/>
+ * Each target is drawn as a flat rectangle of the target's aspect ratio, at
+ * the target's height off the ground, facing the camera unless rotated. Its
+ * corners are projected through a pinhole camera at the camera's place on the
+ * robot, turned by its horizontal and then its vertical angle. CameraModel
+ * only approximates the inverse of this: it treats the horizontal and vertical
+ * angles to a pixel separately, which is exact only near the center of the
+ * image. Differences between sightings and the truth include that
+ * approximation, as well as drawing in whole pixels, noise, clutter and the
+ * pipeline itself. <br/>
+ * Frames can be made harder with random noise: the corners of each target can
+ * be moved by a few pixels, and specks and clutter shapes of the target's color
+ * can be scattered over the frame. All randomness comes from the seed, and
+ * each frame's depends only on the seed and the frame's number, so the same
+ * settings always give the same frames. <br/>
+ * Frames are drawn and processed each time updateSightings() is called.
+ * Frames are given capture times as if captured at the refresh rate, whenever
+ * updateSightings() is actually called.
+ *
+ * @author Jeff
+ *
+ */
+public class SyntheticCVCamera extends CVCamera {
+	/**
+	 * A target drawn by a synthetic camera, at a position relative to the robot.
+	 * Moving it changes where it is drawn in later frames.
+	 */
+	public static final class Placement {
+		private final VisionTarget target;
+		private final double width, height; // Real-world size
+		private double x, y, rotation;
+
+		private Placement(VisionTarget target, double width, double x, double y, double rotation) {
+			this.target = target;
+			this.width = width;
+			this.height = width / target.getAspectRatio();
+			this.x = x;
+			this.y = y;
+			this.rotation = rotation;
+		}
+
+		/**
+		 * Moves the target
+		 *
+		 * @param x the distance of the center of the target to the right of the
+		 *          center of the robot
+		 * @param y the distance of the center of the target in front of the center of
+		 *          the robot
+		 */
+		public void moveTo(double x, double y) {
+			this.x = x;
+			this.y = y;
+		}
+
+		/**
+		 * Turns the target about its vertical axis
+		 *
+		 * @param rotation the angle the target is turned from facing the camera, in
+		 *                 radians, clockwise when seen from above being positive
+		 */
+		public void setRotation(double rotation) {
+			this.rotation = rotation;
+		}
+
+		/**
+		 * @return the vision target drawn
+		 */
+		public VisionTarget getTarget() {
+			return target;
+		}
+
+		/**
+		 * @return the real-world width of the target
+		 */
+		public double getWidth() {
+			return width;
+		}
+
+		/**
+		 * @return the distance of the target to the right of the center of the robot
+		 */
+		public double getX() {
+			return x;
+		}
+
+		/**
+		 * @return the distance of the target in front of the center of the robot
+		 */
+		public double getY() {
+			return y;
+		}
+
+		/**
+		 * @return the angle the target is turned from facing the camera, in radians
+		 */
+		public double getRotation() {
+			return rotation;
+		}
+	}
+
+	/**
+	 * Where a placed target really was in a frame, for comparing with the
+	 * sightings the camera found. Angles and distances mean the same as the
+	 * sighting values of the same names.
+	 */
+	public static final class GroundTruth {
+		private final Placement placement;
+		private final double x, y;
+		private final double robotBasedDistance, robotBasedYaw, robotBasedRotation;
+		private final double cameraBasedDistance, cameraBasedYaw, cameraBasedPitch;
+		private final double centerX, centerY;
+		private final boolean visible;
+
+		private GroundTruth(Placement placement, double robotBasedDistance, double robotBasedYaw,
+				double cameraBasedDistance, double cameraBasedYaw, double cameraBasedPitch, double centerX,
+				double centerY, boolean visible) {
+			this.placement = placement;
+			this.x = placement.x;
+			this.y = placement.y;
+			this.robotBasedRotation = placement.rotation;
+			this.robotBasedDistance = robotBasedDistance;
+			this.robotBasedYaw = robotBasedYaw;
+			this.cameraBasedDistance = cameraBasedDistance;
+			this.cameraBasedYaw = cameraBasedYaw;
+			this.cameraBasedPitch = cameraBasedPitch;
+			this.centerX = centerX;
+			this.centerY = centerY;
+			this.visible = visible;
+		}
+
+		/**
+		 * @return the placement drawn
+		 */
+		public Placement getPlacement() {
+			return placement;
+		}
+
+		/**
+		 * @return the vision target drawn
+		 */
+		public VisionTarget getTarget() {
+			return placement.target;
+		}
+
+		/**
+		 * @return the distance of the target to the right of the center of the robot
+		 */
+		public double getX() {
+			return x;
+		}
+
+		/**
+		 * @return the distance of the target in front of the center of the robot
+		 */
+		public double getY() {
+			return y;
+		}
+
+		/**
+		 * @return the distance along the floor from the center of the robot to the
+		 *         target
+		 */
+		public double getRobotBasedDistance() {
+			return robotBasedDistance;
+		}
+
+		/**
+		 * @return the angle from the front of the robot to the target, in radians
+		 */
+		public double getRobotBasedYaw() {
+			return robotBasedYaw;
+		}
+
+		/**
+		 * @return the angle the target was turned from facing the camera, in radians
+		 */
+		public double getRobotBasedRotation() {
+			return robotBasedRotation;
+		}
+
+		/**
+		 * @return the distance along the floor from the camera to the target
+		 */
+		public double getCameraBasedDistance() {
+			return cameraBasedDistance;
+		}
+
+		/**
+		 * @return the horizontal angle from the center of the camera to the pixel
+		 *         the center of the target was drawn at, in radians
+		 */
+		public double getCameraBasedYaw() {
+			return cameraBasedYaw;
+		}
+
+		/**
+		 * @return the vertical angle from the center of the camera to the pixel the
+		 *         center of the target was drawn at, in radians
+		 */
+		public double getCameraBasedPitch() {
+			return cameraBasedPitch;
+		}
+
+		/**
+		 * @return the x coordinate the center of the target was drawn at, in pixels
+		 */
+		public double getCenterX() {
+			return centerX;
+		}
+
+		/**
+		 * @return the y coordinate the center of the target was drawn at, in pixels
+		 */
+		public double getCenterY() {
+			return centerY;
+		}
+
+		/**
+		 * @return whether any of the target was drawn in the frame
+		 */
+		public boolean isVisible() {
+			return visible;
+		}
+
+		@Override
+		public String toString() {
+			return "GroundTruth [target=" + placement.target.getName() + ", robotBasedDistance=" + robotBasedDistance
+					+ ", robotBasedYaw=" + robotBasedYaw + ", visible=" + visible + "]";
+		}
+	}
+
+	private final FrameProcessor processor = new FrameProcessor(this); // Runs pipelines on drawn frames
+	private final long seed;
+	private final Random placementRandom; // Used by scatter(), separately from each frame's noise
+	private final ArrayList<Placement> placements = new ArrayList<>();
+	private final Mat frame = new Mat(); // Reused for every frame updateSightings() draws
+	private final double[] projected = new double[2]; // Scratch space for project()
+
+	private Scalar background = new Scalar(0, 0, 0), targetColor = new Scalar(0, 255, 0), clutterColor = targetColor;
+	private double vertexNoise = 0; // Standard deviation of corner movement, in pixels
+	private int speckCount = 0, clutterCount = 0;
+	private double clutterMinSize = 4, clutterMaxSize = 20;
+
+	private long frameNumber = 0; // Frames drawn so far
+	private long startNanos; // System.nanoTime() of the first frame
+	private volatile List<GroundTruth> groundTruth = Collections.emptyList();
+
+	/**
+	 * Instantiates the SyntheticCVCamera object
+	 *
+	 * @param refreshRate      the number of frames per second frames are timed as
+	 *                         if captured at
+	 * @param vFOV             the vertical FOV on the Camera in radians
+	 * @param hFOV             the horizontal FOV on the Camera in radians
+	 * @param xPixels          the number of pixels in the x direction (ex: 320)
+	 * @param yPixels          the number of pixels in the y direction (ex: 240)
+	 * @param horizontalOffset the distance from the center of the robot to the
+	 *                         center of the lens of the Camera (in the horizontal
+	 *                         direction) in arbitrary units
+	 * @param verticalOffset   the distance (in arbitrary units) from the ground to
+	 *                         the center of the Camera lens
+	 * @param depthOffset      the distance of the camera from the front of the
+	 *                         robot, in arbitrary units
+	 * @param hAngle           the horizontal placement angle of the Camera in
+	 *                         radians (is the camera facing left or right?)
+	 * @param vAngle           the vertical placement angle of the Camera in radians
+	 *                         (is the camera facing upwards or downwards?)
+	 * @param seed             the seed for every random choice the camera makes
+	 */
+	public SyntheticCVCamera(int refreshRate, double vFOV, double hFOV, double xPixels, double yPixels,
+			double horizontalOffset, double verticalOffset, double depthOffset, double hAngle, double vAngle,
+			long seed) {
+		super(refreshRate, vFOV, hFOV, xPixels, yPixels, horizontalOffset, verticalOffset, depthOffset, hAngle, vAngle);
+		this.seed = seed;
+		this.placementRandom = new Random(seed);
+	}
+
+	/**
+	 * Adds a pipeline that processes the drawn frames
+	 *
+	 * @param p the pipeline to add.
+	 */
+	public void addPipeline(Pipeline p) {
+		processor.addPipeline(p);
+	}
+
+	/**
+	 * Adds a pipeline that processes the drawn frames, using a separate instance
+	 * of it on each thread that processes frames
+	 *
+	 * @param factory creates the pipeline instances. Each instance must have its
+	 *                own supported targets set up.
+	 */
+	public void addPipeline(PipelineFactory factory) {
+		processor.addPipeline(factory);
+	}
+
+	/**
+	 * Sets how this camera's pipelines are run on each frame, limiting parallel
+	 * execution to a given number of threads
+	 *
+	 * @param execution  sequential (the default) or parallel execution
+	 * @param maxThreads the most threads to run pipelines on at once, including
+	 *                   the thread that calls updateSightings()
+	 */
+	public void setPipelineExecution(PipelineExecution execution, int maxThreads) {
+		processor.setExecution(execution, maxThreads);
+	}
+
+	/**
+	 * Places a target facing the camera
+	 *
+	 * @param target the target to draw
+	 * @param width  the real-world width of the target, in the same units as its
+	 *               height. Its real-world height follows from its aspect ratio.
+	 * @param x      the distance of the center of the target to the right of the
+	 *               center of the robot
+	 * @param y      the distance of the center of the target in front of the
+	 *               center of the robot
+	 * @return the placement, which can be moved between frames
+	 */
+	public Placement place(VisionTarget target, double width, double x, double y) {
+		return place(target, width, x, y, 0);
+	}
+
+	/**
+	 * Places a target
+	 *
+	 * @param target   the target to draw
+	 * @param width    the real-world width of the target, in the same units as its
+	 *                 height. Its real-world height follows from its aspect ratio.
+	 * @param x        the distance of the center of the target to the right of the
+	 *                 center of the robot
+	 * @param y        the distance of the center of the target in front of the
+	 *                 center of the robot
+	 * @param rotation the angle the target is turned from facing the camera, in
+	 *                 radians
+	 * @return the placement, which can be moved between frames
+	 */
+	public Placement place(VisionTarget target, double width, double x, double y, double rotation) {
+		if (!(width > 0))
+			throw new IllegalArgumentException("Targets must have a positive width, was given " + width);
+		Placement placement = new Placement(target, width, x, y, rotation);
+		placements.add(placement);
+		return placement;
+	}
+
+	/**
+	 * Places several copies of a target at random, within the camera's view and
+	 * a range of distances from it, facing the camera
+	 *
+	 * @param target      the target to draw
+	 * @param width       the real-world width of the target
+	 * @param count       the number of copies to place
+	 * @param minDistance the least distance along the floor from the camera
+	 * @param maxDistance the greatest distance along the floor from the camera
+	 * @return the new placements
+	 */
+	public List<Placement> scatter(VisionTarget target, double width, int count, double minDistance,
+			double maxDistance) {
+		ArrayList<Placement> scattered = new ArrayList<>(count);
+		double halfFOV = getHorizontalFOV() / 2 * 0.9; // Kept off the edges so targets are fully in view
+		for (int i = 0; i < count; i++) {
+			double yaw = getHorizontalAngle() + (placementRandom.nextDouble() * 2 - 1) * halfFOV;
+			double distance = minDistance + placementRandom.nextDouble() * (maxDistance - minDistance);
+			scattered.add(place(target, width, getHorizontalOffset() + distance * Math.sin(yaw),
+					getDepthOffset() + distance * Math.cos(yaw)));
+		}
+		return scattered;
+	}
+
+	/**
+	 * Removes a placed target from later frames
+	 *
+	 * @param placement the placement to remove
+	 */
+	public void remove(Placement placement) {
+		placements.remove(placement);
+	}
+
+	/**
+	 * Removes every placed target from later frames
+	 */
+	public void clearPlacements() {
+		placements.clear();
+	}
+
+	/**
+	 * Returns the placed targets
+	 *
+	 * @return a read-only list of placements, in the order they were placed
+	 */
+	public List<Placement> getPlacements() {
+		return Collections.unmodifiableList(placements);
+	}
+
+	/**
+	 * Sets how far each corner of each target is moved at random in every frame
+	 *
+	 * @param pixels the standard deviation of the movement, in pixels. 0 (the
+	 *               default) draws targets exactly.
+	 */
+	public void setVertexNoise(double pixels) {
+		this.vertexNoise = pixels;
+	}
+
+	/**
+	 * Sets the number of specks of the clutter color scattered over every frame,
+	 * each a few pixels across
+	 *
+	 * @param count the number of specks. Defaults to 0.
+	 */
+	public void setSpeckCount(int count) {
+		this.speckCount = count;
+	}
+
+	/**
+	 * Sets the number of convex shapes of the clutter color scattered over every
+	 * frame, behind the targets
+	 *
+	 * @param count   the number of shapes. Defaults to 0.
+	 * @param minSize the smallest radius of a shape, in pixels
+	 * @param maxSize the largest radius of a shape, in pixels
+	 */
+	public void setClutter(int count, double minSize, double maxSize) {
+		this.clutterCount = count;
+		this.clutterMinSize = minSize;
+		this.clutterMaxSize = maxSize;
+	}
+
+	/**
+	 * Sets the colors frames are drawn in, as BGR values. Defaults to green
+	 * targets and clutter on a black background.
+	 *
+	 * @param background   the color of the background
+	 * @param targetColor  the color of targets
+	 * @param clutterColor the color of specks and clutter shapes
+	 */
+	public void setColors(Scalar background, Scalar targetColor, Scalar clutterColor) {
+		this.background = background;
+		this.targetColor = targetColor;
+		this.clutterColor = clutterColor;
+	}
+
+	/**
+	 * Draws the next frame, runs it through any pipelines that have been added to
+	 * this camera, and saves the resulting sightings of any targets. Those
+	 * sightings can be accessed afterwards by getSightings() or getLatestFrame(),
+	 * and where the targets really were by getGroundTruth().
+	 */
+	public void updateSightings() {
+		long timestamp = renderFrame(frame);
+		long captureNanos = startNanos + (timestamp - 1) * 1000;
+		processor.process(frame, timestamp, captureNanos);
+	}
+
+	/**
+	 * Draws the next frame without processing it, for measuring pipelines on
+	 * their own. Updates the ground truth.
+	 *
+	 * @param image the image to draw into. Reallocated if its size or type
+	 *              doesn't match the camera's.
+	 * @return the frame's timestamp, in microseconds since the first frame, plus
+	 *         one so that it is never 0
+	 */
+	public long renderFrame(Mat image) {
+		if (frameNumber == 0)
+			startNanos = System.nanoTime();
+		long number = frameNumber++;
+		Random random = new Random(seed ^ (number * 0x9E3779B97F4A7C15L));
+		int width = (int) getPixelWidth(), height = (int) getPixelHeight();
+		image.create(height, width, CvType.CV_8UC3);
+		image.setTo(background);
+
+		for (int i = 0; i < clutterCount; i++) {
+			double radius = clutterMinSize + random.nextDouble() * (clutterMaxSize - clutterMinSize);
+			double cx = random.nextDouble() * width, cy = random.nextDouble() * height;
+			int sides = 3 + random.nextInt(6);
+			double[] angles = new double[sides];
+			for (int k = 0; k < sides; k++)
+				angles[k] = random.nextDouble() * 2 * Math.PI;
+			Arrays.sort(angles); // Points around a circle, in order, are always convex
+			Point[] points = new Point[sides];
+			for (int k = 0; k < sides; k++)
+				points[k] = new Point(cx + radius * Math.cos(angles[k]), cy + radius * Math.sin(angles[k]));
+			fill(image, points, clutterColor);
+		}
+
+		CameraModel model = getModel();
+		ArrayList<GroundTruth> truth = new ArrayList<>(placements.size());
+		for (Placement placement : placements) {
+			truth.add(drawTarget(image, placement, model, random));
+		}
+
+		for (int i = 0; i < speckCount; i++) {
+			Point center = new Point(random.nextDouble() * width, random.nextDouble() * height);
+			Imgproc.circle(image, center, 1 + random.nextInt(2), clutterColor, Imgproc.FILLED);
+		}
+
+		groundTruth = Collections.unmodifiableList(truth);
+		return number * 1_000_000 / getRefreshRate() + 1;
+	}
+
+	/**
+	 * Returns where every placed target really was in the most recent frame
+	 *
+	 * @return a read-only list of ground truths, in the order targets were
+	 *         placed. Empty before the first frame.
+	 */
+	public List<GroundTruth> getGroundTruth() {
+		return groundTruth;
+	}
+
+	/**
+	 * Returns the number of frames drawn so far
+	 *
+	 * @return the number of frames
+	 */
+	public long getFrameCount() {
+		return frameNumber;
+	}
+
+	/**
+	 * Draws one target and works out where it really is
+	 */
+	private GroundTruth drawTarget(Mat image, Placement placement, CameraModel model, Random random) {
+		double z = placement.target.getHeight();
+		double dx = placement.x - getHorizontalOffset(), dy = placement.y - getDepthOffset();
+		double cameraBasedDistance = Math.hypot(dx, dy);
+		double bearing = Math.atan2(dx, dy); // From the camera, relative to the front of the robot
+		double robotBasedDistance = Math.hypot(placement.x, placement.y);
+		double robotBasedYaw = CameraMath.calcRobotAngle(placement.x, placement.y);
+
+		// The corners, going around the rectangle. Across is the target's horizontal
+		// direction, at right angles to the line from the camera unless rotated.
+		double acrossX = Math.cos(bearing + placement.rotation), acrossY = -Math.sin(bearing + placement.rotation);
+		double halfWidth = placement.width / 2, halfHeight = placement.height / 2;
+		double[] across = { -halfWidth, halfWidth, halfWidth, -halfWidth };
+		double[] up = { halfHeight, halfHeight, -halfHeight, -halfHeight };
+		Point[] corners = new Point[4];
+		boolean inFront = true;
+		double minX = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, minY = Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+		for (int k = 0; k < 4; k++) {
+			inFront &= project(placement.x + across[k] * acrossX, placement.y + across[k] * acrossY, z + up[k], model);
+			double px = projected[0] + random.nextGaussian() * vertexNoise;
+			double py = projected[1] + random.nextGaussian() * vertexNoise;
+			corners[k] = new Point(px, py);
+			minX = Math.min(minX, px);
+			maxX = Math.max(maxX, px);
+			minY = Math.min(minY, py);
+			maxY = Math.max(maxY, py);
+		}
+		boolean visible = inFront && maxX >= 0 && minX < getPixelWidth() && maxY >= 0 && minY < getPixelHeight();
+		if (visible)
+			fill(image, corners, targetColor);
+
+		// The camera-based angles are the ones a perfect sighting at the projected
+		// center would have
+		project(placement.x, placement.y, z, model);
+		double cameraBasedYaw = model.getXAngleExact(projected[0]);
+		double cameraBasedPitch = model.getYAngleExact(projected[1]);
+		return new GroundTruth(placement, robotBasedDistance, robotBasedYaw, cameraBasedDistance, cameraBasedYaw,
+				cameraBasedPitch, projected[0], projected[1], visible);
+	}
+
+	/**
+	 * Finds the pixel a point on the field is seen at, and stores it in projected.
+	 * The point is moved into the camera's frame (right, up and along the
+	 * camera's view), then divided by its depth, as in a pinhole camera.
+	 *
+	 * @return false if the point is behind the camera, in which case projected
+	 *         holds no meaningful pixel
+	 */
+	private boolean project(double x, double y, double z, CameraModel model) {
+		double dx = x - getHorizontalOffset(), dy = y - getDepthOffset(), dz = z - getVerticalOffset();
+		double yawSin = Math.sin(getHorizontalAngle()), yawCos = Math.cos(getHorizontalAngle());
+		double pitchSin = Math.sin(getVerticalAngle()), pitchCos = Math.cos(getVerticalAngle());
+		// Turn by the horizontal angle, so forward is the direction the camera faces
+		double right = dx * yawCos - dy * yawSin;
+		double forward = dx * yawSin + dy * yawCos;
+		// Then by the vertical angle, so depth is along the camera's view
+		double up = dz * pitchCos - forward * pitchSin;
+		double depth = forward * pitchCos + dz * pitchSin;
+		projected[0] = model.getPrincipalX() + model.getFocalLengthX() * right / depth;
+		projected[1] = model.getPrincipalY() - model.getFocalLengthY() * up / depth;
+		return depth > 0;
+	}
+
+	private static void fill(Mat image, Point[] points, Scalar color) {
+		MatOfPoint polygon = new MatOfPoint(points);
+		Imgproc.fillConvexPoly(image, polygon, color);
+		polygon.release();
+	}
+}
@@ -0,0 +1,110 @@
+package cameras;
+
+import java.io.File;
+
+import org.opencv.core.Mat;
+import org.opencv.videoio.VideoCapture;
+import org.opencv.videoio.Videoio;
+
+/**
+ * Grabs frames from a video file, in order, as fast as they are asked for.
+ * Frame times are the positions of the frames in the video. Cameras process
+ * frames on the video's timeline rather than by when they were grabbed (see
+ * isLive()).
+ * 
+ * @author Jeff
+ *
+ */
+public class VideoFileFrameSource implements FrameSource {
+	private final VideoCapture capture;
+	private final String name;
+	private final boolean loop;
+	private final long frameMicros; // Time between frames, from the video's frame rate
+	private long offset = 1; // Added to positions so the first frame isn't at 0, which means failure
+	private long timestamp = 0; // Time of the last frame grabbed
+	private long passFrames = 0; // Frames grabbed since the video last started over
+	private boolean finished = false;
+	private String error = "";
+
+	/**
+	 * Opens a video file to grab each frame of once
+	 * 
+	 * @param file the video file
+	 */
+	public VideoFileFrameSource(File file) {
+		this(file, false);
+	}
+
+	/**
+	 * Opens a video file
+	 * 
+	 * @param file the video file
+	 * @param loop whether to start over from the first frame after the last one.
+	 *             Frame times keep increasing from one pass to the next.
+	 *             Otherwise the source finishes after the last frame.
+	 */
+	public VideoFileFrameSource(File file, boolean loop) {
+		this.name = file.getName();
+		this.loop = loop;
+		capture = new VideoCapture(file.getPath());
+		if (!capture.isOpened())
+			throw new IllegalArgumentException("Could not open video " + file);
+		double fps = capture.get(Videoio.CAP_PROP_FPS);
+		frameMicros = fps > 0 ? Math.round(1e6 / fps) : 33_333;
+	}
+
+	@Override
+	public long grabFrame(Mat image) {
+		if (finished) {
+			error = "No frames left in video " + name;
+			return 0;
+		}
+		if (!capture.read(image)) {
+			if (!loop || timestamp == 0) {
+				finished = true;
+				error = timestamp == 0 ? "Could not read a frame from video " + name : "End of video " + name;
+				return 0;
+			}
+			capture.set(Videoio.CAP_PROP_POS_FRAMES, 0);
+			offset = timestamp + frameMicros;
+			passFrames = 0;
+			if (!capture.read(image)) {
+				finished = true;
+				error = "Could not restart video " + name;
+				return 0;
+			}
+		}
+		// Some backends don't report positions, so fall back to counting frames.
+		// Either way, frame times must keep increasing.
+		long position = Math.round(capture.get(Videoio.CAP_PROP_POS_MSEC) * 1000);
+		long time = offset + (position > 0 ? position : passFrames * frameMicros);
+		passFrames++;
+		timestamp = Math.max(time, timestamp + 1);
+		return timestamp;
+	}
+
+	@Override
+	public String getError() {
+		return error;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public boolean isFinished() {
+		return finished;
+	}
+
+	@Override
+	public boolean isLive() {
+		return false;
+	}
+
+	@Override
+	public void close() {
+		capture.release();
+	}
+}
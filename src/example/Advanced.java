@@ -1,35 +1,17 @@
 package example;
 
-import java.util.ArrayList;
-
 import cameras.ManualCVCamera;
 import edu.wpi.first.cameraserver.CameraServer;
 import edu.wpi.first.wpilibj.CameraServer;
-import processing.Sighting;
 import processing.VisionTarget;
 
 public class Advanced {
 	public static void main(String[] args) {
 		VisionTarget rocketTarget = new VisionTarget("Rocket", 28.75, 1);
-		rocketTarget.setPreProcessingFilter((ArrayList<Sighting> in) -> {
-			ArrayList<Sighting> out = new ArrayList<>();
-			for (Sighting sighting : in) {
-				if (sighting.getArea() > 100 && sighting.getSolidity() > .2) {
-					out.add(sighting);
-				}
-			}
-			return out;
-		});
-		rocketTarget.setPostProcessingFilter((ArrayList<Sighting> in) -> {
-			ArrayList<Sighting> out = new ArrayList<>();
-			for (Sighting sighting : in) {
-				if (sighting.getRobotBasedDistance().getAsDouble() > 20
-						&& sighting.getCameraBasedYaw().getAsDouble() < Math.PI) {
-					out.add(sighting);
-				}
-			}
-			return out;
-		});
+		rocketTarget.addPreProcessingPredicate("area", sighting -> sighting.getArea() > 100);
+		rocketTarget.addPreProcessingPredicate("solidity", sighting -> sighting.getSolidity() > .2);
+		rocketTarget.addPostProcessingPredicate("range",
+				sighting -> sighting.robotBasedDistance() > 20 && sighting.cameraBasedYaw() < Math.PI);
 		VisionTarget cargoTarget=new VisionTarget("Cargo", 20.01,1);
 		RocketPipeline pipeline = new RocketPipeline();
 		ManualCVCamera c = new ManualCVCamera(60, 53.13 * Math.PI / 180.0, 54.0 * Math.PI / 180.0, 320, 240, 12,
@@ -43,6 +25,8 @@ public class Advanced {
 			c.updateSightings();
 			System.out.println(c.getSightings(rocketTarget));
 			System.out.println(c.getSightings(cargoTarget));
+			System.out.println(rocketTarget.getPreProcessingFilters()); // How many sightings each test rejected
+			System.out.println(c.getMetrics()); // How long each stage of processing takes
 			Thread.sleep(100);
 		}
 	}
@@ -52,13 +52,14 @@ class RandomCam2 extends CVCamera {
 			// Doing my own math, sometimes using library functions
 			for (Sighting sighting : sightings) {
 				sighting.setCameraBasedDistance(Math.random());
-				Point2D sightingCoords = CameraMath.calcSightingCoords(sighting.getCameraBasedDistance().getAsDouble(),
-						sighting.getCameraBasedYaw().getAsDouble(), this.getHorizontalOffset(), this.getDepthOffset(),
+				Point2D sightingCoords = CameraMath.calcSightingCoords(sighting.cameraBasedDistance(),
+						sighting.cameraBasedYaw(), this.getHorizontalOffset(), this.getDepthOffset(),
 						this.getHorizontalAngle());
 				sightings.get(sightings.size() - 1).setRobotBasedDistance(sightingCoords.distance(0, 0));
 			}
 			container.setSightings(sightings);
 		}
+		publishFrame(); // Make this frame's sightings visible to getSightings()
 	}
 }
 
@@ -42,12 +42,15 @@ public class RocketPipeline extends Pipeline {
 	 * outputs.
 	 */
 	public ArrayList<MatOfPoint> process(Mat source0) {
+		long stageStart = startStage();
+
 		// Step HSV_Threshold0:
 		Mat hsvThresholdInput = source0;
 		double[] hsvThresholdHue = { 45.03597122302158, 76.96969696969695 };
 		double[] hsvThresholdSaturation = { 60.53956834532373, 255.0 };
 		double[] hsvThresholdValue = { 66.76576005382745, 255.0 };
 		hsvThreshold(hsvThresholdInput, hsvThresholdHue, hsvThresholdSaturation, hsvThresholdValue, hsvThresholdOutput);
+		stageStart = endStage("hsvThreshold", stageStart);
 
 		// Step CV_erode0:
 		Mat cvErodeSrc = hsvThresholdOutput;
@@ -58,11 +61,13 @@ public class RocketPipeline extends Pipeline {
 		Scalar cvErodeBordervalue = new Scalar(-1);
 		cvErode(cvErodeSrc, cvErodeKernel, cvErodeAnchor, cvErodeIterations, cvErodeBordertype, cvErodeBordervalue,
 				cvErodeOutput);
+		stageStart = endStage("erode", stageStart);
 
 		// Step Find_Contours0:
 		Mat findContoursInput = cvErodeOutput;
 		boolean findContoursExternalOnly = false;
 		findContours(findContoursInput, findContoursExternalOnly, findContoursOutput);
+		stageStart = endStage("findContours", stageStart);
 
 		// Step Filter_Contours0:
 		ArrayList<MatOfPoint> filterContoursContours = findContoursOutput;
@@ -81,8 +86,10 @@ public class RocketPipeline extends Pipeline {
 				filterContoursMinWidth, filterContoursMaxWidth, filterContoursMinHeight, filterContoursMaxHeight,
 				filterContoursSolidity, filterContoursMaxVertices, filterContoursMinVertices, filterContoursMinRatio,
 				filterContoursMaxRatio, filterContoursOutput);
+		endStage("filterContours", stageStart);
 
-		return filterContoursOutput;
+		// Copied so the caller's list isn't cleared by the next call
+		return new ArrayList<>(filterContoursOutput);
 
 	}
 
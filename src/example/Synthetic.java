@@ -0,0 +1,41 @@
+package example;
+
+import org.opencv.core.Core;
+
+import cameras.SyntheticCVCamera;
+import processing.Sighting;
+import processing.VisionTarget;
+
+/**
+ * Runs the example pipeline on frames drawn by a SyntheticCVCamera, with no
+ * camera attached, and compares what it finds with where the targets really
+ * are.
+ * 
+ * @author Jeff
+ *
+ */
+public class Synthetic {
+	public static void main(String[] args) {
+		System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+		VisionTarget rocketTarget = new VisionTarget("Rocket", 28.75, 2);
+		RocketPipeline pipeline = new RocketPipeline();
+		pipeline.addSupportedTarget(rocketTarget);
+		SyntheticCVCamera c = new SyntheticCVCamera(60, 53.13 * Math.PI / 180.0, 54.0 * Math.PI / 180.0, 320, 240,
+				12, 7.28125, 0, 0, 0, 1086);
+		c.addPipeline(pipeline);
+		SyntheticCVCamera.Placement rocket = c.place(rocketTarget, 14, 0, 60);
+		c.setVertexNoise(0.5);
+		c.setClutter(10, 2, 6); // Small enough for the pipeline's area filter to remove
+
+		for (int i = 0; i < 100; i++) {
+			rocket.moveTo(i - 50, 60 + i); // Drive past the target
+			c.updateSightings();
+			for (Sighting s : c.getSightings(rocketTarget)) {
+				SyntheticCVCamera.GroundTruth truth = c.getGroundTruth().get(0);
+				System.out.printf("distance %.2f (true %.2f), yaw %.4f (true %.4f)%n", s.robotBasedDistance(),
+						truth.getRobotBasedDistance(), s.robotBasedYaw(), truth.getRobotBasedYaw());
+			}
+		}
+		System.out.println(c.getMetrics());
+	}
+}
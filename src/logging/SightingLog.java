@@ -0,0 +1,52 @@
+package logging;
+
+import java.io.File;
+
+/**
+ * The layout of the files SightingLogWriter writes and SightingLogReader
+ * reads. A log starts with a header: a magic number, the format version and
+ * the size of a record. Then come fixed-size records, one per sighting per
+ * target per frame, in the order frames were published. A target with no
+ * sightings in a frame gets one record with a sighting index of -1 and NaN
+ * values, so every frame the target was looked for appears in the log. <br/>
+ * Targets are stored as numbers. Their names are kept next to the log, in a
+ * text file with the same name plus ".targets", one name per line, where line
+ * n (from 0) names target n. <br/>
+ * All numbers are little-endian. Values a sighting doesn't have are NaN.
+ * 
+ * @author Jeff
+ *
+ */
+final class SightingLog {
+	static final int MAGIC = 0x474f4c53; // "SLOG"
+	static final int VERSION = 1;
+	static final int HEADER_BYTES = 16;
+	static final int RECORD_BYTES = 160;
+
+	// Offsets of the fields in a record
+	static final int SEQUENCE = 0; // long, the frame's sequence number
+	static final int CAPTURE_TIMESTAMP = 8; // long, the frame's capture timestamp, in microseconds
+	static final int CAPTURE_NANOS = 16; // long, System.nanoTime() when the frame was captured
+	static final int PUBLISH_NANOS = 24; // long, System.nanoTime() when the frame was published
+	static final int TARGET = 32; // int, the target's number
+	static final int INDEX = 36; // int, the sighting's position in the frame's list, or -1 for none
+	static final int TOP_LEFT_X = 40, TOP_LEFT_Y = 44; // int
+	static final int WIDTH = 48, HEIGHT = 56, CENTER_X = 64, CENTER_Y = 72, AREA = 80, SOLIDITY = 88; // double
+	static final int CAMERA_BASED_PITCH = 96, CAMERA_BASED_YAW = 104, CAMERA_BASED_DISTANCE = 112; // double
+	static final int ROBOT_BASED_DISTANCE = 120, ROBOT_BASED_YAW = 128; // double
+	static final int RELATIVE_ASPECT_RATIO = 136, ROBOT_BASED_ROTATION = 144; // double
+	static final int RAW_SIGHTING_COUNT = 152; // int, the number of raw sightings combined into this one
+
+	private SightingLog() {
+	}
+
+	/**
+	 * Returns the file that names a log's targets
+	 * 
+	 * @param log the log file
+	 * @return the target names file
+	 */
+	static File targetsFile(File log) {
+		return new File(log.getPath() + ".targets");
+	}
+}
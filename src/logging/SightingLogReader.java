@@ -0,0 +1,382 @@
+package logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads a log written by a SightingLogWriter. The file is memory-mapped and
+ * records are read in place by number, so scanning millions of them needs no
+ * parsing, copying or allocation:
+ * 
+ * <pre>
+ * for (long r = 0; r &lt; log.size(); r++)
+ * 	if (log.hasSighting(r) &amp;&amp; log.getTarget(r) == hatch)
+ * 		total += log.getRobotBasedDistance(r);
+ * </pre>
+ * 
+ * Records are in the order frames were published, so a frame's records are
+ * together and sequence numbers never decrease. Values a sighting didn't have
+ * are NaN. A reader only sees the records that were in the file when it was
+ * opened, and may be used from any number of threads.
+ * 
+ * @author Jeff
+ *
+ */
+public class SightingLogReader {
+	private static final int CHUNK_SHIFT = 23; // 2^23 records, about 1.3 GB, are mapped together
+	private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+
+	private final MappedByteBuffer[] chunks;
+	private final long size;
+	private final List<String> targetNames;
+
+	/**
+	 * Opens a log and the names of its targets
+	 * 
+	 * @param file the log file
+	 * @throws IOException if the file could not be read, or is not a sighting log
+	 */
+	public SightingLogReader(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long bytes = channel.size();
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					Math.min(bytes, SightingLog.HEADER_BYTES));
+			header.order(ByteOrder.LITTLE_ENDIAN);
+			if (bytes < SightingLog.HEADER_BYTES || header.getInt(0) != SightingLog.MAGIC)
+				throw new IOException(file + " is not a sighting log");
+			if (header.getInt(4) != SightingLog.VERSION || header.getInt(8) != SightingLog.RECORD_BYTES)
+				throw new IOException(file + " was written in an unsupported format, version " + header.getInt(4));
+
+			// A record cut off by the writer stopping part way through is left out
+			size = (bytes - SightingLog.HEADER_BYTES) / SightingLog.RECORD_BYTES;
+			chunks = new MappedByteBuffer[(int) ((size + CHUNK_MASK) >>> CHUNK_SHIFT)];
+			for (int i = 0; i < chunks.length; i++) {
+				long first = (long) i << CHUNK_SHIFT;
+				long records = Math.min(size - first, 1L << CHUNK_SHIFT);
+				chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+						SightingLog.HEADER_BYTES + first * SightingLog.RECORD_BYTES, records * SightingLog.RECORD_BYTES);
+				chunks[i].order(ByteOrder.LITTLE_ENDIAN);
+			}
+		}
+		File targets = SightingLog.targetsFile(file);
+		targetNames = targets.exists()
+				? Collections.unmodifiableList(Files.readAllLines(targets.toPath(), StandardCharsets.UTF_8))
+				: Collections.emptyList();
+	}
+
+	/**
+	 * Returns the number of records in the log
+	 * 
+	 * @return the number of records
+	 */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * Returns the names of the log's targets, by target number
+	 * 
+	 * @return a read-only list of names. Empty if the targets file is missing.
+	 */
+	public List<String> getTargetNames() {
+		return targetNames;
+	}
+
+	/**
+	 * Returns the number a target is stored as
+	 * 
+	 * @param name the target's name
+	 * @return the target's number, or -1 if no target of that name is in the log
+	 */
+	public int getTargetId(String name) {
+		return targetNames.indexOf(name);
+	}
+
+	/**
+	 * Returns the first record of the frame with a given sequence number, or of
+	 * the first frame after it if that frame isn't in the log
+	 * 
+	 * @param sequence the frame's sequence number
+	 * @return the record's number, or size() if every frame in the log is earlier
+	 */
+	public long findFrame(long sequence) {
+		long low = 0, high = size;
+		while (low < high) {
+			long mid = (low + high) >>> 1;
+			if (getSequence(mid) < sequence)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the sequence number of the frame a record is from (see
+	 * FrameSnapshot.getSequence())
+	 * 
+	 * @param record the record's number
+	 * @return the frame's sequence number
+	 */
+	public long getSequence(long record) {
+		return chunk(record).getLong(offset(record) + SightingLog.SEQUENCE);
+	}
+
+	/**
+	 * Returns the timestamp the record's frame was grabbed with
+	 * 
+	 * @param record the record's number
+	 * @return the timestamp, in microseconds, or 0 if unknown
+	 */
+	public long getCaptureTimestampMicros(long record) {
+		return chunk(record).getLong(offset(record) + SightingLog.CAPTURE_TIMESTAMP);
+	}
+
+	/**
+	 * Returns when the record's frame was captured, from System.nanoTime() on the
+	 * machine that wrote the log
+	 * 
+	 * @param record the record's number
+	 * @return the capture time, in nanoseconds
+	 */
+	public long getCaptureNanos(long record) {
+		return chunk(record).getLong(offset(record) + SightingLog.CAPTURE_NANOS);
+	}
+
+	/**
+	 * Returns when the record's frame was published, from System.nanoTime() on
+	 * the machine that wrote the log
+	 * 
+	 * @param record the record's number
+	 * @return the publish time, in nanoseconds
+	 */
+	public long getPublishNanos(long record) {
+		return chunk(record).getLong(offset(record) + SightingLog.PUBLISH_NANOS);
+	}
+
+	/**
+	 * Returns the number of the target a record is of
+	 * 
+	 * @param record the record's number
+	 * @return the target's number (see getTargetNames())
+	 */
+	public int getTarget(long record) {
+		return chunk(record).getInt(offset(record) + SightingLog.TARGET);
+	}
+
+	/**
+	 * Returns the name of the target a record is of
+	 * 
+	 * @param record the record's number
+	 * @return the target's name, or null if it is missing from the targets file
+	 */
+	public String getTargetName(long record) {
+		int target = getTarget(record);
+		return target < targetNames.size() ? targetNames.get(target) : null;
+	}
+
+	/**
+	 * Returns whether a record holds a sighting. A record without one marks a
+	 * frame in which the target was looked for but not seen.
+	 * 
+	 * @param record the record's number
+	 * @return true if the record holds a sighting
+	 */
+	public boolean hasSighting(long record) {
+		return getSightingIndex(record) >= 0;
+	}
+
+	/**
+	 * Returns the position of a record's sighting in its frame's list of
+	 * sightings of the target
+	 * 
+	 * @param record the record's number
+	 * @return the index, or -1 if the record holds no sighting
+	 */
+	public int getSightingIndex(long record) {
+		return chunk(record).getInt(offset(record) + SightingLog.INDEX);
+	}
+
+	/**
+	 * Returns the x coordinate of the top left corner of a record's sighting
+	 * 
+	 * @param record the record's number
+	 * @return the x coordinate of the top left corner of the sighting
+	 */
+	public int getTopLeftX(long record) {
+		return chunk(record).getInt(offset(record) + SightingLog.TOP_LEFT_X);
+	}
+
+	/**
+	 * Returns the y coordinate of the top left corner of a record's sighting
+	 * 
+	 * @param record the record's number
+	 * @return the y coordinate of the top left corner of the sighting
+	 */
+	public int getTopLeftY(long record) {
+		return chunk(record).getInt(offset(record) + SightingLog.TOP_LEFT_Y);
+	}
+
+	/**
+	 * Returns the width of a record's sighting
+	 * 
+	 * @param record the record's number
+	 * @return the width of the sighting, in pixels
+	 */
+	public double getWidth(long record) {
+		return getDouble(record, SightingLog.WIDTH);
+	}
+
+	/**
+	 * Returns the height of a record's sighting
+	 * 
+	 * @param record the record's number
+	 * @return the height of the sighting, in pixels
+	 */
+	public double getHeight(long record) {
+		return getDouble(record, SightingLog.HEIGHT);
+	}
+
+	/**
+	 * Returns the x coordinate of the center of a record's sighting
+	 * 
+	 * @param record the record's number
+	 * @return the x coordinate of the center of the sighting
+	 */
+	public double getCenterX(long record) {
+		return getDouble(record, SightingLog.CENTER_X);
+	}
+
+	/**
+	 * Returns the y coordinate of the center of a record's sighting
+	 * 
+	 * @param record the record's number
+	 * @return the y coordinate of the center of the sighting
+	 */
+	public double getCenterY(long record) {
+		return getDouble(record, SightingLog.CENTER_Y);
+	}
+
+	/**
+	 * Returns the area of a record's sighting
+	 * 
+	 * @param record the record's number
+	 * @return the area of the sighting, in pixels
+	 */
+	public double getArea(long record) {
+		return getDouble(record, SightingLog.AREA);
+	}
+
+	/**
+	 * Returns the solidity of a record's sighting
+	 * 
+	 * @param record the record's number
+	 * @return the solidity of the sighting
+	 */
+	public double getSolidity(long record) {
+		return getDouble(record, SightingLog.SOLIDITY);
+	}
+
+	/**
+	 * Returns the pitch of a record's sighting relative to the camera
+	 * 
+	 * @param record the record's number
+	 * @return the pitch of the sighting relative to the camera, in radians
+	 */
+	public double getCameraBasedPitch(long record) {
+		return getDouble(record, SightingLog.CAMERA_BASED_PITCH);
+	}
+
+	/**
+	 * Returns the yaw of a record's sighting relative to the camera
+	 * 
+	 * @param record the record's number
+	 * @return the yaw of the sighting relative to the camera, in radians
+	 */
+	public double getCameraBasedYaw(long record) {
+		return getDouble(record, SightingLog.CAMERA_BASED_YAW);
+	}
+
+	/**
+	 * Returns the distance of a record's sighting from the camera
+	 * 
+	 * @param record the record's number
+	 * @return the distance of the sighting from the camera
+	 */
+	public double getCameraBasedDistance(long record) {
+		return getDouble(record, SightingLog.CAMERA_BASED_DISTANCE);
+	}
+
+	/**
+	 * Returns the distance of a record's sighting from the center of the robot
+	 * 
+	 * @param record the record's number
+	 * @return the distance of the sighting from the center of the robot
+	 */
+	public double getRobotBasedDistance(long record) {
+		return getDouble(record, SightingLog.ROBOT_BASED_DISTANCE);
+	}
+
+	/**
+	 * Returns the yaw of a record's sighting relative to the robot
+	 * 
+	 * @param record the record's number
+	 * @return the yaw of the sighting relative to the robot, in radians
+	 */
+	public double getRobotBasedYaw(long record) {
+		return getDouble(record, SightingLog.ROBOT_BASED_YAW);
+	}
+
+	/**
+	 * Returns the aspect ratio of a record's sighting relative to its target's
+	 * 
+	 * @param record the record's number
+	 * @return the aspect ratio of the sighting relative to its target's
+	 */
+	public double getRelativeAspectRatio(long record) {
+		return getDouble(record, SightingLog.RELATIVE_ASPECT_RATIO);
+	}
+
+	/**
+	 * Returns the rotation of a record's sighting relative to the robot
+	 * 
+	 * @param record the record's number
+	 * @return the rotation of the sighting relative to the robot, in radians
+	 */
+	public double getRobotBasedRotation(long record) {
+		return getDouble(record, SightingLog.ROBOT_BASED_ROTATION);
+	}
+
+	/**
+	 * Returns the number of raw sightings combined into a record's sighting
+	 * 
+	 * @param record the record's number
+	 * @return the number of raw sightings combined into the sighting, or 0 if the
+	 *         record holds no sighting
+	 */
+	public int getRawSightingCount(long record) {
+		return chunk(record).getInt(offset(record) + SightingLog.RAW_SIGHTING_COUNT);
+	}
+
+	private double getDouble(long record, int field) {
+		return chunk(record).getDouble(offset(record) + field);
+	}
+
+	private MappedByteBuffer chunk(long record) {
+		if (record < 0 || record >= size)
+			throw new IndexOutOfBoundsException("Record " + record + " of a log with " + size + " records");
+		return chunks[(int) (record >>> CHUNK_SHIFT)];
+	}
+
+	private static int offset(long record) {
+		return (int) (record & CHUNK_MASK) * SightingLog.RECORD_BYTES;
+	}
+}
@@ -0,0 +1,281 @@
+package logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import cameras.CVCamera;
+import cameras.FrameListener;
+import cameras.FrameSnapshot;
+import cameras.FrameTiming;
+import processing.Sighting;
+import processing.VisionTarget;
+
+/**
+ * Writes every frame a camera publishes to a binary log file, one fixed-size
+ * record per sighting (see SightingLog), for analysing matches afterwards with
+ * a SightingLogReader. <br/>
+ * Add a writer to a camera with CVCamera.addFrameListener(). Handing it a
+ * frame only puts the frame in a queue, so the camera's thread never waits for
+ * the disk: a writer thread turns queued frames into records, gathers them in
+ * a buffer, and writes the buffer whenever it fills or the queue runs dry. If
+ * the writer thread falls so far behind that the queue fills up, new frames are
+ * dropped and counted rather than slowing the camera down. <br/>
+ * A writer logs one camera, since sequence numbers are only in order within a
+ * camera (see SightingLogReader.findFrame()). To log several cameras, give
+ * each its own writer.
+ * 
+ * @author Jeff
+ *
+ */
+public class SightingLogWriter implements FrameListener {
+	private static final int BUFFER_RECORDS = 512; // Records gathered before each write
+	private static final long IDLE_MILLIS = 100; // How often the writer thread checks whether it was closed
+
+	private final File file;
+	private final FileChannel channel;
+	private final ArrayBlockingQueue<FrameSnapshot> queue;
+	private final Thread writer;
+	private final AtomicLong droppedFrames = new AtomicLong();
+	private final AtomicReference<CVCamera> camera = new AtomicReference<>(); // Set by the first frame
+	private volatile boolean closing = false;
+	private volatile IOException failure; // Why writing stopped, if it did
+
+	// Only used by the writer thread
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_RECORDS * SightingLog.RECORD_BYTES)
+			.order(ByteOrder.LITTLE_ENDIAN);
+	private final HashMap<VisionTarget, Integer> targetIds = new HashMap<>();
+	private volatile long recordCount = 0; // Readable from any thread
+
+	/**
+	 * Creates a log file, replacing any log already there, and starts its writer
+	 * thread. Up to 256 frames may wait to be written.
+	 * 
+	 * @param file the log file
+	 * @throws IOException if the file could not be created
+	 */
+	public SightingLogWriter(File file) throws IOException {
+		this(file, 256);
+	}
+
+	/**
+	 * Creates a log file, replacing any log already there, and starts its writer
+	 * thread
+	 * 
+	 * @param file          the log file
+	 * @param queueCapacity the most frames that may wait to be written before new
+	 *                      frames are dropped
+	 * @throws IOException if the file could not be created
+	 */
+	public SightingLogWriter(File file, int queueCapacity) throws IOException {
+		this.file = file;
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+		Files.write(SightingLog.targetsFile(file).toPath(), new byte[0]);
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		ByteBuffer header = ByteBuffer.allocate(SightingLog.HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(SightingLog.MAGIC).putInt(SightingLog.VERSION).putInt(SightingLog.RECORD_BYTES).putInt(0);
+		header.flip();
+		while (header.hasRemaining())
+			channel.write(header);
+		writer = new Thread(this::writeFrames, file.getName() + " writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Queues a frame to be written. Never waits; if the queue is full, the frame
+	 * is dropped (see getDroppedFrameCount()).
+	 * 
+	 * @param frame the published frame
+	 * @throws IllegalStateException if the frame is from a different camera than
+	 *                               the first frame logged
+	 */
+	@Override
+	public void framePublished(FrameSnapshot frame) {
+		CVCamera source = frame.getCamera();
+		if (!camera.compareAndSet(null, source) && camera.get() != source)
+			throw new IllegalStateException(
+					"A sighting log can only record one camera, give each camera its own SightingLogWriter");
+		if (closing || !queue.offer(frame))
+			droppedFrames.incrementAndGet();
+	}
+
+	/**
+	 * Writes every queued frame, then closes the log. Frames given to the writer
+	 * afterwards are dropped. The writer thread doesn't keep the program running,
+	 * so frames still queued when the program exits without calling this are
+	 * lost.
+	 * 
+	 * @throws IOException if writing the log failed at any point
+	 */
+	public void close() throws IOException {
+		closing = true;
+		boolean interrupted = false;
+		while (writer.isAlive()) {
+			try {
+				writer.join();
+			} catch (InterruptedException e) {
+				// The log must not be closed while frames are still being written to it
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		channel.close();
+		if (failure != null)
+			throw failure;
+	}
+
+	/**
+	 * Returns the number of frames dropped because the queue was full or the
+	 * writer was closed
+	 * 
+	 * @return the number of dropped frames
+	 */
+	public long getDroppedFrameCount() {
+		return droppedFrames.get();
+	}
+
+	/**
+	 * Returns the number of records written so far, including ones still in the
+	 * writer's buffer
+	 * 
+	 * @return the number of records
+	 */
+	public long getRecordCount() {
+		return recordCount;
+	}
+
+	/**
+	 * Returns the log file
+	 * 
+	 * @return the file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * The writer thread's loop. Writes queued frames until the writer is closed
+	 * and the queue is empty, or writing fails.
+	 */
+	private void writeFrames() {
+		try {
+			while (true) {
+				FrameSnapshot frame = queue.poll(IDLE_MILLIS, TimeUnit.MILLISECONDS);
+				if (frame == null) {
+					flush();
+					if (closing && queue.isEmpty())
+						break;
+					continue;
+				}
+				writeFrame(frame);
+				if (queue.isEmpty())
+					flush();
+			}
+		} catch (IOException e) {
+			failure = e;
+			closing = true;
+			System.err.println("Problem writing sighting log " + file + ", logging stopped");
+			e.printStackTrace();
+		} catch (InterruptedException e) {
+			// Only happens if something outside the writer interrupts its thread
+		}
+	}
+
+	/**
+	 * Adds a frame's records to the buffer, writing the buffer whenever it fills
+	 */
+	private void writeFrame(FrameSnapshot frame) throws IOException {
+		FrameTiming timing = frame.getTiming();
+		for (VisionTarget target : frame.getTargets()) {
+			int id = targetId(target);
+			List<Sighting> sightings = frame.getSightings(target);
+			if (sightings.isEmpty()) {
+				writeRecord(frame.getSequence(), timing, id, -1, null);
+			}
+			for (int i = 0; i < sightings.size(); i++) {
+				writeRecord(frame.getSequence(), timing, id, i, sightings.get(i));
+			}
+		}
+	}
+
+	private void writeRecord(long sequence, FrameTiming timing, int target, int index, Sighting s)
+			throws IOException {
+		if (buffer.remaining() < SightingLog.RECORD_BYTES)
+			flush();
+		int at = buffer.position();
+		buffer.putLong(at + SightingLog.SEQUENCE, sequence);
+		buffer.putLong(at + SightingLog.CAPTURE_TIMESTAMP, timing.getCaptureTimestampMicros());
+		buffer.putLong(at + SightingLog.CAPTURE_NANOS, timing.getCaptureNanos());
+		buffer.putLong(at + SightingLog.PUBLISH_NANOS, timing.getPublishNanos());
+		buffer.putInt(at + SightingLog.TARGET, target);
+		buffer.putInt(at + SightingLog.INDEX, index);
+		if (s == null) {
+			buffer.putInt(at + SightingLog.TOP_LEFT_X, 0);
+			buffer.putInt(at + SightingLog.TOP_LEFT_Y, 0);
+			for (int field = SightingLog.WIDTH; field <= SightingLog.ROBOT_BASED_ROTATION; field += 8)
+				buffer.putDouble(at + field, Double.NaN);
+			buffer.putInt(at + SightingLog.RAW_SIGHTING_COUNT, 0);
+		} else {
+			buffer.putInt(at + SightingLog.TOP_LEFT_X, s.getTopLeftX());
+			buffer.putInt(at + SightingLog.TOP_LEFT_Y, s.getTopLeftY());
+			buffer.putDouble(at + SightingLog.WIDTH, s.getWidth());
+			buffer.putDouble(at + SightingLog.HEIGHT, s.getHeight());
+			buffer.putDouble(at + SightingLog.CENTER_X, s.getCenterX());
+			buffer.putDouble(at + SightingLog.CENTER_Y, s.getCenterY());
+			buffer.putDouble(at + SightingLog.AREA, s.getArea());
+			buffer.putDouble(at + SightingLog.SOLIDITY, s.getSolidity());
+			buffer.putDouble(at + SightingLog.CAMERA_BASED_PITCH, s.cameraBasedPitch());
+			buffer.putDouble(at + SightingLog.CAMERA_BASED_YAW, s.cameraBasedYaw());
+			buffer.putDouble(at + SightingLog.CAMERA_BASED_DISTANCE, s.cameraBasedDistance());
+			buffer.putDouble(at + SightingLog.ROBOT_BASED_DISTANCE, s.robotBasedDistance());
+			buffer.putDouble(at + SightingLog.ROBOT_BASED_YAW, s.robotBasedYaw());
+			buffer.putDouble(at + SightingLog.RELATIVE_ASPECT_RATIO, s.relativeAspectRatio());
+			buffer.putDouble(at + SightingLog.ROBOT_BASED_ROTATION, s.robotBasedRotation());
+			buffer.putInt(at + SightingLog.RAW_SIGHTING_COUNT, s.getRawSightingCount());
+		}
+		buffer.putInt(at + SightingLog.RAW_SIGHTING_COUNT + 4, 0);
+		buffer.position(at + SightingLog.RECORD_BYTES);
+		recordCount++;
+	}
+
+	/**
+	 * Writes the buffered records to the file
+	 */
+	private void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+
+	/**
+	 * Returns a target's number, adding its name to the targets file the first
+	 * time it is seen
+	 */
+	private int targetId(VisionTarget target) throws IOException {
+		Integer id = targetIds.get(target);
+		if (id == null) {
+			id = targetIds.size();
+			targetIds.put(target, id);
+			List<String> line = Collections.singletonList(target.getName());
+			Files.write(SightingLog.targetsFile(file).toPath(), line, StandardCharsets.UTF_8,
+					StandardOpenOption.APPEND);
+		}
+		return id;
+	}
+}
@@ -0,0 +1,93 @@
+package math;
+
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * A precomputed table of the angle to every pixel along one axis of a camera
+ * image, sampled a fixed number of times per pixel. Looking up an angle
+ * linearly interpolates between the two nearest samples, replacing a call to
+ * Math.atan() with a few multiplications. <br/>
+ * Since the resolution of a camera is fixed, the table is small (one sample
+ * per pixel for a 320 pixel wide camera is 321 doubles). Coordinates outside of
+ * the image fall back to the exact formula.
+ * 
+ * @author Jeff
+ *
+ */
+public final class AngleLookupTable {
+	private final DoubleUnaryOperator exact; // The function the table approximates
+	private final double[] samples; // samples[i] = exact(i / subdivisions)
+	private final double subdivisions; // Samples per pixel
+	private final double maxCoordinate; // The largest coordinate covered by the table
+	private final double maxError; // The largest difference from exact found when the table was built
+
+	/**
+	 * Builds a table for coordinates from 0 to size, and measures its error
+	 * against the exact function
+	 * 
+	 * @param exact        the exact angle function, taking a pixel coordinate and
+	 *                     returning an angle in radians
+	 * @param size         the number of pixels along the axis (ex: 320 for x on a
+	 *                     320x240 camera)
+	 * @param subdivisions the number of samples per pixel. Higher values are more
+	 *                     accurate but use more memory.
+	 */
+	public AngleLookupTable(DoubleUnaryOperator exact, double size, int subdivisions) {
+		if (subdivisions < 1)
+			throw new IllegalArgumentException("Subdivisions must be at least 1, was " + subdivisions);
+		this.exact = exact;
+		this.subdivisions = subdivisions;
+		this.samples = new double[(int) Math.ceil(size * subdivisions) + 1];
+		this.maxCoordinate = (samples.length - 1) / this.subdivisions;
+		for (int i = 0; i < samples.length; i++) {
+			samples[i] = exact.applyAsDouble(i / this.subdivisions);
+		}
+
+		// Interpolation error is largest between samples, so check a few points in
+		// each interval
+		double error = 0;
+		for (int i = 0; i < samples.length - 1; i++) {
+			for (int step = 1; step < 4; step++) {
+				double coord = (i + step / 4.0) / this.subdivisions;
+				error = Math.max(error, Math.abs(get(coord) - exact.applyAsDouble(coord)));
+			}
+		}
+		this.maxError = error;
+	}
+
+	/**
+	 * Returns the angle to a pixel coordinate
+	 * 
+	 * @param coord the pixel coordinate. May be fractional, as with the center of
+	 *              a sighting.
+	 * @return the angle, in radians. Within getMaxError() of the exact formula.
+	 */
+	public double get(double coord) {
+		if (!(coord >= 0 && coord < maxCoordinate)) // Also catches NaN
+			return exact.applyAsDouble(coord);
+		double position = coord * subdivisions;
+		int index = (int) position;
+		double fraction = position - index;
+		return samples[index] + (samples[index + 1] - samples[index]) * fraction;
+	}
+
+	/**
+	 * Returns the largest difference between this table and the exact formula
+	 * found when the table was built. This bounds the error of get() anywhere in
+	 * the image.
+	 * 
+	 * @return the maximum error, in radians
+	 */
+	public double getMaxError() {
+		return maxError;
+	}
+
+	/**
+	 * Returns the number of samples the table stores per pixel
+	 * 
+	 * @return the number of subdivisions
+	 */
+	public int getSubdivisions() {
+		return (int) subdivisions;
+	}
+}
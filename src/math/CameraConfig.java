@@ -29,12 +29,11 @@ public class CameraConfig {
 	 */
 	public static double[] configure(VisionTarget target, double distance, double horizontalOffset,
 			double verticalOffset, Sighting s) throws Exception {
-		if (!s.getCameraBasedYaw().isPresent() || !s.getCameraBasedPitch().isPresent())
+		if (!s.hasCameraBasedYaw() || !s.hasCameraBasedPitch())
 			throw new Exception("Raw vertical angle or raw horizontal angle is not available!");
 
-		double horizontalAngle = CameraConfig.getXPlacementAngle(s.getCameraBasedYaw().getAsDouble(), distance,
-				horizontalOffset);
-		double verticalAngle = CameraConfig.getYPlacementAngle(s.getCameraBasedPitch().getAsDouble(),
+		double horizontalAngle = CameraConfig.getXPlacementAngle(s.cameraBasedYaw(), distance, horizontalOffset);
+		double verticalAngle = CameraConfig.getYPlacementAngle(s.cameraBasedPitch(),
 				target.getHeight() - verticalOffset, distance);
 		return new double[] { horizontalAngle, verticalAngle };
 	}
@@ -3,7 +3,9 @@ import java.awt.geom.Point2D;
 
 /**
  * A static class containing methods for calculating relevant information from
- * camera data.
+ * camera data. <br/>
+ * For calculations that run on every sighting of every frame, see CameraModel,
+ * which precomputes the values that only depend on the camera.
  * 
  * @author Jeff
  *
@@ -83,12 +85,24 @@ public class CameraMath {
 	 * @return The angle from the origin to that point, in radians.
 	 */
 	public static double calcRobotAngle(Point2D p) {
-		if (p.getY() >= 0) {
-			return Math.atan(p.getX() / p.getY());
-		} else if (p.getX() >= 0) {
-			return Math.atan(p.getX() / p.getY()) + Math.PI;
+		return calcRobotAngle(p.getX(), p.getY());
+	}
+
+	/**
+	 * Calculates the angle from the origin to a given point, (x, y), with 0 being
+	 * along the y axis.
+	 * 
+	 * @param x the x coordinate of a point in space
+	 * @param y the y coordinate of that point
+	 * @return The angle from the origin to that point, in radians.
+	 */
+	public static double calcRobotAngle(double x, double y) {
+		if (y >= 0) {
+			return Math.atan(x / y);
+		} else if (x >= 0) {
+			return Math.atan(x / y) + Math.PI;
 		}
-		return Math.atan(p.getX() / p.getY()) - Math.PI;
+		return Math.atan(x / y) - Math.PI;
 	}
 
 	/**
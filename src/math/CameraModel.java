@@ -0,0 +1,302 @@
+package math;
+
+/**
+ * An immutable pinhole model of a camera and its placement on the robot, used
+ * to run the CameraMath calculations for many sightings without recomputing
+ * the parts that only depend on the camera. <br/>
+ * Focal lengths, the principal point (image center) and the sine, cosine and
+ * tangent of the placement angles are computed once when the model is
+ * built. Distances and robot-relative coordinates are then found from pixel
+ * coordinates using only arithmetic and a square root, with the same results
+ * as the equivalent CameraMath methods. <br/>
+ * Optionally, a model can carry lookup tables for the camera-based yaw and
+ * pitch of every pixel (see withLookupTables()), replacing the remaining
+ * Math.atan() calls with table lookups.
+ * 
+ * @author Jeff
+ *
+ */
+public final class CameraModel {
+	// Intrinsics, in pixels
+	private final double pixelWidth, pixelHeight;
+	private final double focalLengthX, focalLengthY; // pinhole focal lengths
+	private final double principalX, principalY; // the pixel coordinates of the center of the image
+
+	// Placement
+	private final double horizontalOffset, verticalOffset, depthOffset;
+	private final double yawSin, yawCos; // of the horizontal placement angle
+	private final double pitchTan; // of the vertical placement angle
+
+	// Optional per-pixel angle tables. Null when angles are calculated exactly.
+	private final AngleLookupTable yawTable, pitchTable;
+
+	/**
+	 * Builds the model of a camera
+	 * 
+	 * @param hFOV             the horizontal field of view of the camera, in
+	 *                         radians
+	 * @param vFOV             the vertical field of view of the camera, in radians
+	 * @param pixelWidth       the width of the camera stream in pixels (ex: 320)
+	 * @param pixelHeight      the height of the camera stream in pixels (ex: 240)
+	 * @param horizontalOffset the distance from the center of the robot to the
+	 *                         center of the lens, right being positive
+	 * @param verticalOffset   the distance from the ground to the center of the
+	 *                         lens
+	 * @param depthOffset      the distance the camera is offset from the center of
+	 *                         the robot forwards/backwards, with backwards being
+	 *                         positive (see CameraMath.calcSightingCoords())
+	 * @param hAngle           the horizontal placement angle of the camera in
+	 *                         radians, right being positive
+	 * @param vAngle           the vertical placement angle of the camera in
+	 *                         radians, up being positive
+	 */
+	public CameraModel(double hFOV, double vFOV, double pixelWidth, double pixelHeight, double horizontalOffset,
+			double verticalOffset, double depthOffset, double hAngle, double vAngle) {
+		this.pixelWidth = pixelWidth;
+		this.pixelHeight = pixelHeight;
+		// Same pinhole model as CameraMath.getXAngle() and getYAngle()
+		this.focalLengthX = (pixelWidth / 2.0) / Math.tan(hFOV / 2.0);
+		this.focalLengthY = (pixelHeight / 2.0) / Math.tan(vFOV / 2.0);
+		this.principalX = (pixelWidth / 2.0) - 0.5;
+		this.principalY = (pixelHeight / 2.0) - 0.5;
+		this.horizontalOffset = horizontalOffset;
+		this.verticalOffset = verticalOffset;
+		this.depthOffset = depthOffset;
+		this.yawSin = Math.sin(hAngle);
+		this.yawCos = Math.cos(hAngle);
+		this.pitchTan = Math.tan(vAngle);
+		this.yawTable = null;
+		this.pitchTable = null;
+	}
+
+	/**
+	 * Copies a model, adding lookup tables
+	 * 
+	 * @param model        the model to copy
+	 * @param subdivisions the number of table samples per pixel
+	 */
+	private CameraModel(CameraModel model, int subdivisions) {
+		this.pixelWidth = model.pixelWidth;
+		this.pixelHeight = model.pixelHeight;
+		this.focalLengthX = model.focalLengthX;
+		this.focalLengthY = model.focalLengthY;
+		this.principalX = model.principalX;
+		this.principalY = model.principalY;
+		this.horizontalOffset = model.horizontalOffset;
+		this.verticalOffset = model.verticalOffset;
+		this.depthOffset = model.depthOffset;
+		this.yawSin = model.yawSin;
+		this.yawCos = model.yawCos;
+		this.pitchTan = model.pitchTan;
+		this.yawTable = new AngleLookupTable(model::getXAngleExact, pixelWidth, subdivisions);
+		this.pitchTable = new AngleLookupTable(model::getYAngleExact, pixelHeight, subdivisions);
+	}
+
+	/**
+	 * Returns a copy of this model that finds camera-based yaw and pitch using
+	 * lookup tables instead of Math.atan(). Every other calculation is unchanged.
+	 * 
+	 * @param subdivisions the number of table samples per pixel. 1 is accurate to
+	 *                     about a microradian on a 320x240 camera; see
+	 *                     getLookupTableError() for the exact bound.
+	 * @return the new model
+	 */
+	public CameraModel withLookupTables(int subdivisions) {
+		return new CameraModel(this, subdivisions);
+	}
+
+	/**
+	 * Returns whether this model uses lookup tables for camera-based angles
+	 * 
+	 * @return true if the model was made by withLookupTables()
+	 */
+	public boolean hasLookupTables() {
+		return yawTable != null;
+	}
+
+	/**
+	 * Returns the largest difference between the lookup tables and the exact
+	 * angle formulas, measured when the tables were built
+	 * 
+	 * @return the maximum error, in radians. 0 if this model has no lookup tables.
+	 */
+	public double getLookupTableError() {
+		return yawTable == null ? 0 : Math.max(yawTable.getMaxError(), pitchTable.getMaxError());
+	}
+
+	/**
+	 * Finds the horizontal angle to a specific pixel, using the lookup table if
+	 * this model has one
+	 * 
+	 * @param x the pixel's x coordinate
+	 * @return the horizontal angle from the center of the camera to that pixel, in
+	 *         radians
+	 */
+	public double getXAngle(double x) {
+		return yawTable == null ? getXAngleExact(x) : yawTable.get(x);
+	}
+
+	/**
+	 * Finds the vertical angle to a specific pixel, using the lookup table if this
+	 * model has one
+	 * 
+	 * @param y the pixel's y coordinate
+	 * @return the vertical angle from the center of the camera to that pixel, in
+	 *         radians
+	 */
+	public double getYAngle(double y) {
+		return pitchTable == null ? getYAngleExact(y) : pitchTable.get(y);
+	}
+
+	/**
+	 * Finds the horizontal angle to a specific pixel. Equivalent to
+	 * CameraMath.getXAngle().
+	 * 
+	 * @param x the pixel's x coordinate
+	 * @return the horizontal angle from the center of the camera to that pixel, in
+	 *         radians
+	 */
+	public double getXAngleExact(double x) {
+		return Math.atan(getXTangent(x));
+	}
+
+	/**
+	 * Finds the vertical angle to a specific pixel. Equivalent to
+	 * CameraMath.getYAngle().
+	 * 
+	 * @param y the pixel's y coordinate
+	 * @return the vertical angle from the center of the camera to that pixel, in
+	 *         radians
+	 */
+	public double getYAngleExact(double y) {
+		return Math.atan(getYTangent(y));
+	}
+
+	/**
+	 * Returns the tangent of the horizontal angle to a pixel, which the pinhole
+	 * model gives directly without any trigonometry
+	 * 
+	 * @param x the pixel's x coordinate
+	 * @return the tangent of the camera-based yaw to that pixel
+	 */
+	public double getXTangent(double x) {
+		return (x - principalX) / focalLengthX;
+	}
+
+	/**
+	 * Returns the tangent of the vertical angle to a pixel, which the pinhole
+	 * model gives directly without any trigonometry
+	 * 
+	 * @param y the pixel's y coordinate
+	 * @return the tangent of the camera-based pitch to that pixel
+	 */
+	public double getYTangent(double y) {
+		return (principalY - y) / focalLengthY;
+	}
+
+	/**
+	 * Calculates the distance along the floor from the camera to a target seen at
+	 * a given pixel height. Equivalent to CameraMath.calculateDistance(), using the
+	 * tangent addition formula in place of sin/cos of the combined pitch.
+	 * 
+	 * @param y            the y coordinate of the center of the sighting
+	 * @param targetHeight the height of the center of the target off the ground
+	 * @return the distance along the floor from the camera to the sighting
+	 */
+	public double calculateDistance(double y, double targetHeight) {
+		double cameraPitchTan = getYTangent(y);
+		// tan(cameraBasedPitch + vAngle)
+		double robotPitchTan = (cameraPitchTan + pitchTan) / (1 - cameraPitchTan * pitchTan);
+		return (targetHeight - verticalOffset) / robotPitchTan;
+	}
+
+	/**
+	 * Calculates the x (left-to-right) coordinate of a sighting if the center of
+	 * the robot is (0,0). Equivalent to the x coordinate of
+	 * CameraMath.calcSightingCoords(), using the angle addition formula in place of
+	 * sin of the combined yaw.
+	 * 
+	 * @param x                   the x coordinate of the center of the sighting,
+	 *                            in pixels
+	 * @param cameraBasedDistance the distance from the camera to the sighting
+	 * @return the x coordinate of the sighting, right being positive
+	 */
+	public double getRobotX(double x, double cameraBasedDistance) {
+		double yawTan = getXTangent(x);
+		// sin(cameraBasedYaw + hAngle), with sin and cos of the yaw taken from its tangent
+		double sin = (yawTan * yawCos + yawSin) / Math.sqrt(1 + yawTan * yawTan);
+		return cameraBasedDistance * sin + horizontalOffset;
+	}
+
+	/**
+	 * Calculates the y (front-to-back) coordinate of a sighting if the center of
+	 * the robot is (0,0). Equivalent to the y coordinate of
+	 * CameraMath.calcSightingCoords(), using the angle addition formula in place of
+	 * cos of the combined yaw.
+	 * 
+	 * @param x                   the x coordinate of the center of the sighting,
+	 *                            in pixels
+	 * @param cameraBasedDistance the distance from the camera to the sighting
+	 * @return the y coordinate of the sighting, forward being positive
+	 */
+	public double getRobotY(double x, double cameraBasedDistance) {
+		double yawTan = getXTangent(x);
+		// cos(cameraBasedYaw + hAngle), with sin and cos of the yaw taken from its tangent
+		double cos = (yawCos - yawTan * yawSin) / Math.sqrt(1 + yawTan * yawTan);
+		return cameraBasedDistance * cos + depthOffset;
+	}
+
+	/**
+	 * Returns the width of the camera stream this model was built for
+	 * 
+	 * @return the width in pixels
+	 */
+	public double getPixelWidth() {
+		return pixelWidth;
+	}
+
+	/**
+	 * Returns the height of the camera stream this model was built for
+	 * 
+	 * @return the height in pixels
+	 */
+	public double getPixelHeight() {
+		return pixelHeight;
+	}
+
+	/**
+	 * Returns the horizontal focal length of the pinhole model
+	 * 
+	 * @return the focal length, in pixels
+	 */
+	public double getFocalLengthX() {
+		return focalLengthX;
+	}
+
+	/**
+	 * Returns the vertical focal length of the pinhole model
+	 * 
+	 * @return the focal length, in pixels
+	 */
+	public double getFocalLengthY() {
+		return focalLengthY;
+	}
+
+	/**
+	 * Returns the x coordinate of the center of the image
+	 * 
+	 * @return the x coordinate of the principal point, in pixels
+	 */
+	public double getPrincipalX() {
+		return principalX;
+	}
+
+	/**
+	 * Returns the y coordinate of the center of the image
+	 * 
+	 * @return the y coordinate of the principal point, in pixels
+	 */
+	public double getPrincipalY() {
+		return principalY;
+	}
+}
@@ -0,0 +1,112 @@
+package math;
+
+/**
+ * A Kalman filter that estimates one quantity and its rate of change, assuming
+ * the rate stays constant between measurements apart from random acceleration.
+ * <br/>
+ * The state is a value and a velocity, and the covariance is a symmetric 2x2
+ * matrix, so everything is kept in a handful of double fields and no arrays
+ * or objects are allocated by predict() or update().
+ * 
+ * @author Jeff
+ *
+ */
+public class ConstantVelocityKalmanFilter {
+	private final double measurementVariance; // Variance of each measurement
+	private final double accelerationVariance; // Variance of the random acceleration between measurements
+	private double value, velocity; // The estimated state
+	private double p00, p01, p11; // Covariance of the estimate: value, value/velocity, velocity
+
+	/**
+	 * Creates a filter and sets its state from a first measurement, with no
+	 * known velocity
+	 * 
+	 * @param measurement                the first measurement
+	 * @param measurementNoise           the standard deviation of each measurement
+	 * @param accelerationNoise          the standard deviation of the random
+	 *                                   acceleration, in units per second squared
+	 * @param initialVelocityUncertainty the standard deviation of the velocity
+	 *                                   before it has been observed, in units per
+	 *                                   second
+	 */
+	public ConstantVelocityKalmanFilter(double measurement, double measurementNoise, double accelerationNoise,
+			double initialVelocityUncertainty) {
+		this.measurementVariance = measurementNoise * measurementNoise;
+		this.accelerationVariance = accelerationNoise * accelerationNoise;
+		this.value = measurement;
+		this.velocity = 0;
+		this.p00 = measurementVariance;
+		this.p01 = 0;
+		this.p11 = initialVelocityUncertainty * initialVelocityUncertainty;
+	}
+
+	/**
+	 * Moves the estimate forward in time
+	 * 
+	 * @param dt the time since the last prediction or update, in seconds
+	 */
+	public void predict(double dt) {
+		value += velocity * dt;
+		// P = F P F^T + Q, with F = [1 dt; 0 1] and Q from a random acceleration
+		double dt2 = dt * dt;
+		double q00 = accelerationVariance * dt2 * dt2 / 4, q01 = accelerationVariance * dt2 * dt / 2,
+				q11 = accelerationVariance * dt2;
+		p00 += dt * (2 * p01 + dt * p11) + q00;
+		p01 += dt * p11 + q01;
+		p11 += q11;
+	}
+
+	/**
+	 * Corrects the estimate with a measurement taken at the current time
+	 * 
+	 * @param measurement the measured value
+	 */
+	public void update(double measurement) {
+		double innovation = measurement - value;
+		double s = p00 + measurementVariance;
+		double k0 = p00 / s, k1 = p01 / s; // Kalman gain
+		value += k0 * innovation;
+		velocity += k1 * innovation;
+		p11 -= k1 * p01;
+		p01 -= k0 * p01;
+		p00 -= k0 * p00;
+	}
+
+	/**
+	 * Returns the estimated value
+	 * 
+	 * @return the value as of the last prediction or update
+	 */
+	public double getValue() {
+		return value;
+	}
+
+	/**
+	 * Returns the estimated rate of change of the value
+	 * 
+	 * @return the velocity, in units per second
+	 */
+	public double getVelocity() {
+		return velocity;
+	}
+
+	/**
+	 * Returns where the value is expected to be some time from now, without
+	 * changing the estimate
+	 * 
+	 * @param dt the time from now, in seconds
+	 * @return the predicted value
+	 */
+	public double valueAt(double dt) {
+		return value + velocity * dt;
+	}
+
+	/**
+	 * Returns the variance of the estimated value
+	 * 
+	 * @return the variance, in units squared
+	 */
+	public double getValueVariance() {
+		return p00;
+	}
+}
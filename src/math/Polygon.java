@@ -0,0 +1,267 @@
+package math;
+
+import java.util.Arrays;
+
+/**
+ * A compact, immutable polygon with integer vertices, stored as one primitive
+ * array of interleaved coordinates {x0, y0, x1, y1, ...}. Used to represent
+ * the shape of a sighting without java.awt.geom. <br/>
+ * The bounding box, area and centroid are computed in a single pass when the
+ * polygon is built, and the point-in-polygon test and union (by convex hull)
+ * work directly on the coordinate array.
+ * 
+ * @author Jeff
+ *
+ */
+public final class Polygon {
+	private final int[] coords; // Interleaved x and y coordinates of the vertices, in order
+	private final int vertexCount;
+	private final int minX, minY, maxX, maxY; // Bounding box, inclusive
+	private final double area; // Enclosed area, from the shoelace formula
+	private final double centroidX, centroidY; // Center of mass of the enclosed area
+
+	/**
+	 * Creates a polygon from interleaved vertex coordinates. The array is used
+	 * directly and must not be modified afterwards.
+	 * 
+	 * @param coords      the coordinates, {x0, y0, x1, y1, ...}, with the vertices
+	 *                    in order around the polygon
+	 * @param vertexCount the number of vertices to use from the array
+	 */
+	public Polygon(int[] coords, int vertexCount) {
+		if (vertexCount < 1 || coords.length < vertexCount * 2)
+			throw new IllegalArgumentException("A polygon needs at least one vertex and 2 coordinates per vertex");
+		this.coords = coords;
+		this.vertexCount = vertexCount;
+		int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+		long twiceArea = 0, sumX = 0, sumY = 0;
+		double momentX = 0, momentY = 0;
+		for (int i = 0, j = vertexCount - 1; i < vertexCount; j = i++) {
+			int xi = coords[i * 2], yi = coords[i * 2 + 1], xj = coords[j * 2], yj = coords[j * 2 + 1];
+			minX = Math.min(minX, xi);
+			maxX = Math.max(maxX, xi);
+			minY = Math.min(minY, yi);
+			maxY = Math.max(maxY, yi);
+			sumX += xi;
+			sumY += yi;
+			// Shoelace formula, and the first moments of area that go with it
+			long cross = (long) xj * yi - (long) xi * yj;
+			twiceArea += cross;
+			momentX += (double) (xj + xi) * cross;
+			momentY += (double) (yj + yi) * cross;
+		}
+		this.minX = minX;
+		this.minY = minY;
+		this.maxX = maxX;
+		this.maxY = maxY;
+		this.area = Math.abs(twiceArea) / 2.0;
+		if (twiceArea != 0) {
+			this.centroidX = momentX / (3.0 * twiceArea);
+			this.centroidY = momentY / (3.0 * twiceArea);
+		} else { // A line or a point has no area, so use the average vertex
+			this.centroidX = (double) sumX / vertexCount;
+			this.centroidY = (double) sumY / vertexCount;
+		}
+	}
+
+	/**
+	 * Returns the number of vertices in this polygon
+	 * 
+	 * @return the vertex count
+	 */
+	public int getVertexCount() {
+		return vertexCount;
+	}
+
+	/**
+	 * Returns the x coordinate of a vertex
+	 * 
+	 * @param i the index of the vertex
+	 * @return its x coordinate
+	 */
+	public int getX(int i) {
+		return coords[i * 2];
+	}
+
+	/**
+	 * Returns the y coordinate of a vertex
+	 * 
+	 * @param i the index of the vertex
+	 * @return its y coordinate
+	 */
+	public int getY(int i) {
+		return coords[i * 2 + 1];
+	}
+
+	/**
+	 * Returns the smallest x coordinate of any vertex
+	 * 
+	 * @return the left edge of the bounding box
+	 */
+	public int getMinX() {
+		return minX;
+	}
+
+	/**
+	 * Returns the smallest y coordinate of any vertex
+	 * 
+	 * @return the top edge of the bounding box
+	 */
+	public int getMinY() {
+		return minY;
+	}
+
+	/**
+	 * Returns the largest x coordinate of any vertex
+	 * 
+	 * @return the right edge of the bounding box
+	 */
+	public int getMaxX() {
+		return maxX;
+	}
+
+	/**
+	 * Returns the largest y coordinate of any vertex
+	 * 
+	 * @return the bottom edge of the bounding box
+	 */
+	public int getMaxY() {
+		return maxY;
+	}
+
+	/**
+	 * Calculates the area enclosed by this polygon using the shoelace formula
+	 * 
+	 * @return the area, in square pixels. Always positive, whichever direction the
+	 *         vertices go around.
+	 */
+	public double area() {
+		return area;
+	}
+
+	/**
+	 * Returns the x coordinate of the centroid (center of mass) of the area
+	 * enclosed by this polygon
+	 * 
+	 * @return the x coordinate of the centroid. For a polygon with no area, the
+	 *         average x coordinate of its vertices.
+	 */
+	public double getCentroidX() {
+		return centroidX;
+	}
+
+	/**
+	 * Returns the y coordinate of the centroid (center of mass) of the area
+	 * enclosed by this polygon
+	 * 
+	 * @return the y coordinate of the centroid. For a polygon with no area, the
+	 *         average y coordinate of its vertices.
+	 */
+	public double getCentroidY() {
+		return centroidY;
+	}
+
+	/**
+	 * Tests whether a point is inside this polygon, using the even-odd rule
+	 * 
+	 * @param x the x coordinate of the point
+	 * @param y the y coordinate of the point
+	 * @return true if the point is inside
+	 */
+	public boolean contains(double x, double y) {
+		if (x < minX || x > maxX || y < minY || y > maxY)
+			return false;
+		boolean inside = false;
+		for (int i = 0, j = vertexCount - 1; i < vertexCount; j = i++) {
+			int xi = coords[i * 2], yi = coords[i * 2 + 1], xj = coords[j * 2], yj = coords[j * 2 + 1];
+			if ((yi > y) != (yj > y) && x < (double) (xj - xi) * (y - yi) / (yj - yi) + xi) {
+				inside = !inside;
+			}
+		}
+		return inside;
+	}
+
+	/**
+	 * Tests whether this polygon's bounding box overlaps another's
+	 * 
+	 * @param other the other polygon
+	 * @return true if the bounding boxes share at least one point
+	 */
+	public boolean boundsIntersect(Polygon other) {
+		return minX <= other.maxX && other.minX <= maxX && minY <= other.maxY && other.minY <= maxY;
+	}
+
+	/**
+	 * Combines this polygon with another by taking the convex hull of both. Much
+	 * cheaper than an exact polygon union, and exact whenever the union is itself
+	 * convex.
+	 * 
+	 * @param other the polygon to combine with this one
+	 * @return the convex hull of both polygons' vertices
+	 */
+	public Polygon unionByHull(Polygon other) {
+		int[] all = new int[(vertexCount + other.vertexCount) * 2];
+		System.arraycopy(coords, 0, all, 0, vertexCount * 2);
+		System.arraycopy(other.coords, 0, all, vertexCount * 2, other.vertexCount * 2);
+		return convexHull(all, vertexCount + other.vertexCount);
+	}
+
+	/**
+	 * Returns the convex hull of this polygon
+	 * 
+	 * @return a convex polygon with vertices in counter-clockwise order (in image
+	 *         coordinates, where y points down, clockwise on screen)
+	 */
+	public Polygon convexHull() {
+		return convexHull(Arrays.copyOf(coords, vertexCount * 2), vertexCount);
+	}
+
+	/**
+	 * Finds the convex hull of a set of points with Andrew's monotone chain
+	 * algorithm
+	 * 
+	 * @param points interleaved coordinates of the points. Reordered in place.
+	 * @param count  the number of points
+	 * @return the hull
+	 */
+	private static Polygon convexHull(int[] points, int count) {
+		// Sort points by x, then y. Packing each point into a long keeps the sort
+		// primitive.
+		long[] sorted = new long[count];
+		for (int i = 0; i < count; i++) {
+			sorted[i] = ((long) points[i * 2] << 32) | (points[i * 2 + 1] & 0xFFFFFFFFL);
+		}
+		Arrays.sort(sorted);
+
+		int[] hull = new int[(count + 1) * 2];
+		int size = 0;
+		// Lower hull, then upper hull
+		for (int pass = 0; pass < 2; pass++) {
+			int start = size;
+			for (int k = 0; k < count; k++) {
+				long point = sorted[pass == 0 ? k : count - 1 - k];
+				int x = (int) (point >> 32), y = (int) point;
+				while (size >= start + 2 && cross(hull, size - 2, size - 1, x, y) <= 0) {
+					size--;
+				}
+				hull[size * 2] = x;
+				hull[size * 2 + 1] = y;
+				size++;
+			}
+			size--; // The last point of each chain is the first point of the other
+		}
+		if (size < 1)
+			size = 1;
+		return new Polygon(hull, size);
+	}
+
+	/**
+	 * Returns the cross product of (b - a) and (p - a), where a and b are
+	 * vertices stored in an array. Positive if p is counter-clockwise from a to
+	 * b.
+	 */
+	private static long cross(int[] coords, int a, int b, int px, int py) {
+		long ax = coords[a * 2], ay = coords[a * 2 + 1];
+		return (coords[b * 2] - ax) * (py - ay) - (coords[b * 2 + 1] - ay) * (px - ax);
+	}
+}
@@ -0,0 +1,173 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations that uses the same memory however many values are
+ * recorded. Values are counted in buckets whose width grows with the value:
+ * each power of two is split into 16 buckets, so any percentile is accurate to
+ * within about 6%, from nanoseconds up to about 18 minutes. <br/>
+ * Recording a value is a few arithmetic operations and an atomic increment,
+ * and may be done from any number of threads at once. Percentiles read while
+ * values are being recorded may be slightly out of date.
+ * 
+ * @author Jeff
+ *
+ */
+public class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 4, SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int MAX_EXPONENT = 40; // Values of 2^41 nanoseconds or more share the last bucket
+	private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong(), total = new AtomicLong(), max = new AtomicLong();
+
+	/**
+	 * Records a duration
+	 * 
+	 * @param nanos the duration, in nanoseconds. Negative values count as 0.
+	 */
+	public void record(long nanos) {
+		if (nanos < 0)
+			nanos = 0;
+		counts.incrementAndGet(bucket(nanos));
+		count.incrementAndGet();
+		total.addAndGet(nanos);
+		if (nanos > max.get())
+			max.accumulateAndGet(nanos, Math::max);
+	}
+
+	/**
+	 * Returns the number of durations recorded
+	 * 
+	 * @return the count
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * Returns the longest duration recorded
+	 * 
+	 * @return the maximum, in nanoseconds, or 0 if nothing has been recorded
+	 */
+	public long getMaxNanos() {
+		return max.get();
+	}
+
+	/**
+	 * Returns the average of the durations recorded
+	 * 
+	 * @return the mean, in nanoseconds, or 0 if nothing has been recorded
+	 */
+	public double getMeanNanos() {
+		long n = count.get();
+		return n == 0 ? 0 : (double) total.get() / n;
+	}
+
+	/**
+	 * Returns the sum of the durations recorded
+	 * 
+	 * @return the total, in nanoseconds
+	 */
+	public long getTotalNanos() {
+		return total.get();
+	}
+
+	/**
+	 * Returns the duration that a given fraction of recorded durations were at
+	 * or below
+	 * 
+	 * @param percentile the percentile, from 0 to 100
+	 * @return the duration, in nanoseconds, or 0 if nothing has been recorded
+	 */
+	public long getPercentileNanos(double percentile) {
+		long n = 0;
+		long[] snapshot = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+			n += snapshot[i];
+		}
+		if (n == 0)
+			return 0;
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= rank)
+				return Math.min(upperBound(i), max.get());
+		}
+		return max.get();
+	}
+
+	/**
+	 * Returns the median duration
+	 * 
+	 * @return the 50th percentile, in nanoseconds
+	 */
+	public long getP50Nanos() {
+		return getPercentileNanos(50);
+	}
+
+	/**
+	 * Returns the duration 95% of durations were at or below
+	 * 
+	 * @return the 95th percentile, in nanoseconds
+	 */
+	public long getP95Nanos() {
+		return getPercentileNanos(95);
+	}
+
+	/**
+	 * Returns the duration 99% of durations were at or below
+	 * 
+	 * @return the 99th percentile, in nanoseconds
+	 */
+	public long getP99Nanos() {
+		return getPercentileNanos(99);
+	}
+
+	/**
+	 * Forgets every recorded duration
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++)
+			counts.set(i, 0);
+		count.set(0);
+		total.set(0);
+		max.set(0);
+	}
+
+	/**
+	 * Returns the bucket a value is counted in. Values below SUB_BUCKETS get a
+	 * bucket each; above that, each power of two is split into SUB_BUCKETS
+	 * buckets.
+	 */
+	private static int bucket(long value) {
+		if (value < SUB_BUCKETS)
+			return (int) value;
+		int exponent = Math.min(63 - Long.numberOfLeadingZeros(value), MAX_EXPONENT);
+		if (exponent == MAX_EXPONENT && value >= 2L << MAX_EXPONENT)
+			return BUCKETS - 1;
+		int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+	}
+
+	/**
+	 * Returns the largest value counted in a bucket
+	 */
+	private static long upperBound(int bucket) {
+		if (bucket < SUB_BUCKETS)
+			return bucket;
+		int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1, sub = bucket % SUB_BUCKETS;
+		long width = 1L << (exponent - SUB_BUCKET_BITS);
+		return (1L << exponent) + (sub + 1) * width - 1;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("n=%d p50=%.3fms p95=%.3fms p99=%.3fms max=%.3fms", getCount(), getP50Nanos() / 1e6,
+				getP95Nanos() / 1e6, getP99Nanos() / 1e6, getMaxNanos() / 1e6);
+	}
+}
@@ -0,0 +1,129 @@
+package metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Timings and counts for the stages of one part of the vision system, such as
+ * a camera, a pipeline or a target. Each stage has a LatencyHistogram, created
+ * the first time the stage is timed, and each counter is created the first
+ * time it is used. <br/>
+ * Stages may be timed from any thread. Code that times a stage every frame
+ * should keep the histogram returned by stage() rather than look it up each
+ * time.
+ * 
+ * @author Jeff
+ *
+ */
+public class StageMetrics {
+	private final String name;
+	private final Map<String, LatencyHistogram> stages = new ConcurrentSkipListMap<>();
+	private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates an empty set of metrics
+	 * 
+	 * @param name what the metrics are for, such as the name of a camera
+	 */
+	public StageMetrics(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Returns what the metrics are for
+	 * 
+	 * @return the name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the histogram of a stage, creating it if the stage has not been
+	 * timed yet
+	 * 
+	 * @param stage the name of the stage
+	 * @return the stage's histogram
+	 */
+	public LatencyHistogram stage(String stage) {
+		LatencyHistogram histogram = stages.get(stage);
+		return histogram != null ? histogram : stages.computeIfAbsent(stage, s -> new LatencyHistogram());
+	}
+
+	/**
+	 * Records how long a stage took, given when it started
+	 * 
+	 * @param stage      the name of the stage
+	 * @param startNanos when the stage started, from System.nanoTime()
+	 * @return the current time, from System.nanoTime(), which can be used as the
+	 *         start of the next stage
+	 */
+	public long end(String stage, long startNanos) {
+		long now = System.nanoTime();
+		stage(stage).record(now - startNanos);
+		return now;
+	}
+
+	/**
+	 * Returns a counter, creating it if it has not been used yet
+	 * 
+	 * @param counter the name of the counter
+	 * @return the counter
+	 */
+	public AtomicLong counter(String counter) {
+		AtomicLong value = counters.get(counter);
+		return value != null ? value : counters.computeIfAbsent(counter, c -> new AtomicLong());
+	}
+
+	/**
+	 * Adds to a counter
+	 * 
+	 * @param counter the name of the counter
+	 * @param delta   the amount to add
+	 */
+	public void count(String counter, long delta) {
+		counter(counter).addAndGet(delta);
+	}
+
+	/**
+	 * Returns every stage that has been timed
+	 * 
+	 * @return a read-only map of stage names to histograms, sorted by name
+	 */
+	public Map<String, LatencyHistogram> getStages() {
+		return Collections.unmodifiableMap(stages);
+	}
+
+	/**
+	 * Returns every counter that has been used
+	 * 
+	 * @return a read-only map of counter names to counters
+	 */
+	public Map<String, AtomicLong> getCounters() {
+		return Collections.unmodifiableMap(counters);
+	}
+
+	/**
+	 * Resets every stage and counter to zero. Stages and counters are kept, so
+	 * histograms held by other code are still used.
+	 */
+	public void reset() {
+		for (LatencyHistogram histogram : stages.values())
+			histogram.reset();
+		for (AtomicLong value : counters.values())
+			value.set(0);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(name);
+		for (Map.Entry<String, LatencyHistogram> stage : stages.entrySet())
+			sb.append("\n  ").append(stage.getKey()).append(": ").append(stage.getValue());
+		for (Map.Entry<String, AtomicLong> counter : counters.entrySet())
+			sb.append("\n  ").append(counter.getKey()).append(" = ").append(counter.getValue().get());
+		return sb.toString();
+	}
+}
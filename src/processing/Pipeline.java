@@ -13,6 +13,8 @@ import org.opencv.core.Rect;
 import org.opencv.core.Scalar;
 import org.opencv.imgproc.Imgproc;
 
+import metrics.StageMetrics;
+
 /**
  * A Computer Vision pipeline that can take a frame (image) from a camera and
  * produce a set of contours that can be turned into sightings of supported
@@ -28,7 +30,16 @@ import org.opencv.imgproc.Imgproc;
  * TargetLogicFunction, a lambda which returns a list of targets. In this case,
  * the pipeline will output to whatever targets the function returns, as opposed
  * to a fixed set of Targets. An example use for this is a moving camera that should only
- * find targets of a certain type when it is in a certain position.
+ * find targets of a certain type when it is in a certain position. <br/>
+ *
+ * 
+ * A Pipeline instance is not required to be thread-safe. Cameras only use a
+ * given instance from one thread at a time; to process frames on several
+ * threads at once, give the camera a PipelineFactory so each thread gets its
+ * own instance. <br/>
+ * Cameras time each call to process() into the pipeline's StageMetrics.
+ * Implementations can time their own steps as well with startStage() and
+ * endStage().
  * 
  * @author Jeff
  *
@@ -41,15 +52,20 @@ public abstract class Pipeline {
 	// true if the getSupportedTargets method returns supportedTargets every time,
 	// false if they have implemented their own logic
 	private boolean fixedTargets = true;
+	// Timings of this pipeline's stages
+	private volatile StageMetrics metrics = new StageMetrics(getClass().getSimpleName());
 	
 	/**
 	 * Processes the frame into a set of contours (sighting boundaries) to be made
 	 * into sightings
 	 * 
-	 * @param source the frame (image) to process
-	 * @return a set of contours, stored in a Mat to be turned into sightings
+	 * @param source the frame (image) to process. Must not be modified, since other
+	 *               pipelines may be reading it at the same time.
+	 * @return a set of contours, stored in a Mat to be turned into sightings. The
+	 *         list belongs to the caller: implementations must return a new list
+	 *         each call rather than one they keep and reuse.
 	 */
-	protected abstract ArrayList<MatOfPoint> process(Mat source);
+	public abstract ArrayList<MatOfPoint> process(Mat source);
 
 	/**
 	 * Returns the targets that this pipeline can see. For example, if there are
@@ -153,4 +169,46 @@ public abstract class Pipeline {
 	public void disableCustomTargetLogic() {
 		fixedTargets = true;
 	}
+
+	/**
+	 * Returns the timings of this pipeline's stages. Cameras record running
+	 * process() as "process" and turning its contours into sightings as
+	 * "sightings", and count the contours returned as "contours".
+	 * 
+	 * @return the pipeline's metrics
+	 */
+	public StageMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Sets where this pipeline's timings are recorded. Used to share one set of
+	 * metrics between the instances a PipelineFactory creates.
+	 * 
+	 * @param metrics the metrics to record into
+	 */
+	public void setMetrics(StageMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Starts timing a step of process()
+	 * 
+	 * @return the current time, to pass to endStage()
+	 */
+	protected long startStage() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Finishes timing a step of process(), recording it in this pipeline's
+	 * metrics
+	 * 
+	 * @param stage      the name of the step
+	 * @param startNanos the time startStage() or the previous endStage() returned
+	 * @return the current time, so the next step can be timed from here
+	 */
+	protected long endStage(String stage, long startNanos) {
+		return metrics.end(stage, startNanos);
+	}
 }
@@ -0,0 +1,20 @@
+package processing;
+
+/**
+ * A single-method interface for creating new instances of a Pipeline. Cameras
+ * that are given a PipelineFactory instead of a Pipeline create one instance
+ * per thread that processes frames, so pipelines that keep working buffers in
+ * fields (like GRIP-generated ones) can safely process several frames at once.
+ * 
+ * @author Jeff
+ *
+ */
+public interface PipelineFactory {
+	/**
+	 * Creates a new, fully set-up Pipeline, including its supported targets or
+	 * TargetLogicFunction. Every call must return a different instance.
+	 * 
+	 * @return the new pipeline
+	 */
+	public Pipeline create();
+}
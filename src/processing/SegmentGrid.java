@@ -0,0 +1,177 @@
+package processing;
+
+import java.awt.geom.Line2D;
+
+/**
+ * A uniform grid over the edges of a closed outline, used to find the edge
+ * nearest to a point without testing every edge. Each cell lists the edges
+ * whose bounding boxes overlap it, stored in one flat array with an offset per
+ * cell, so a grid is three primitive arrays no matter how many edges it
+ * holds. <br/>
+ * Queries search outward from the point's cell one ring of cells at a time and
+ * stop as soon as no unvisited cell can hold anything closer than the best
+ * distance found so far. Nothing is allocated while querying.
+ *
+ * @author Jeff
+ *
+ */
+final class SegmentGrid {
+	private final int[] coords; // Interleaved vertex coordinates. Edge i runs from vertex i to vertex i + 1.
+	private final int pointCount;
+	private final int minX, minY, maxX, maxY; // Bounding box of the vertices, inclusive
+	private final int cellSize; // Width and height of a cell, in pixels
+	private final int columns, rows;
+	private final int[] cellStart; // Edges of cell c are cellEdges[cellStart[c]] to cellEdges[cellStart[c + 1] - 1]
+	private final int[] cellEdges;
+
+	/**
+	 * Builds a grid over the edges of a closed outline. The array is used directly
+	 * and must not be modified afterwards.
+	 *
+	 * @param coords     the outline's vertices, {x0, y0, x1, y1, ...}, in order.
+	 *                   The last vertex connects back to the first.
+	 * @param pointCount the number of vertices to use from the array; at least 1
+	 */
+	SegmentGrid(int[] coords, int pointCount) {
+		this.coords = coords;
+		this.pointCount = pointCount;
+		int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+		double perimeter = 0;
+		for (int i = 0; i < pointCount; i++) {
+			int x = coords[i * 2], y = coords[i * 2 + 1];
+			minX = Math.min(minX, x);
+			maxX = Math.max(maxX, x);
+			minY = Math.min(minY, y);
+			maxY = Math.max(maxY, y);
+			int next = (i + 1) % pointCount;
+			perimeter += Math.hypot(coords[next * 2] - x, coords[next * 2 + 1] - y);
+		}
+		this.minX = minX;
+		this.minY = minY;
+		this.maxX = maxX;
+		this.maxY = maxY;
+
+		// About one edge per cell, but no smaller than an average edge so that edges
+		// rarely span more than a few cells
+		int extent = Math.max(maxX - minX, maxY - minY) + 1;
+		int side = (int) Math.ceil(Math.sqrt(pointCount));
+		cellSize = Math.max(1, Math.max((extent + side - 1) / side, (int) Math.ceil(perimeter / pointCount)));
+		columns = (maxX - minX) / cellSize + 1;
+		rows = (maxY - minY) / cellSize + 1;
+
+		// Count the edges in each cell, turn the counts into offsets, then fill
+		cellStart = new int[columns * rows + 1];
+		for (int i = 0; i < pointCount; i++) {
+			int next = (i + 1) % pointCount;
+			int c0 = column(Math.min(coords[i * 2], coords[next * 2]));
+			int c1 = column(Math.max(coords[i * 2], coords[next * 2]));
+			int r0 = row(Math.min(coords[i * 2 + 1], coords[next * 2 + 1]));
+			int r1 = row(Math.max(coords[i * 2 + 1], coords[next * 2 + 1]));
+			for (int r = r0; r <= r1; r++)
+				for (int c = c0; c <= c1; c++)
+					cellStart[r * columns + c + 1]++;
+		}
+		for (int c = 0; c < columns * rows; c++)
+			cellStart[c + 1] += cellStart[c];
+		cellEdges = new int[cellStart[columns * rows]];
+		int[] fill = new int[columns * rows];
+		for (int i = 0; i < pointCount; i++) {
+			int next = (i + 1) % pointCount;
+			int c0 = column(Math.min(coords[i * 2], coords[next * 2]));
+			int c1 = column(Math.max(coords[i * 2], coords[next * 2]));
+			int r0 = row(Math.min(coords[i * 2 + 1], coords[next * 2 + 1]));
+			int r1 = row(Math.max(coords[i * 2 + 1], coords[next * 2 + 1]));
+			for (int r = r0; r <= r1; r++) {
+				for (int c = c0; c <= c1; c++) {
+					int cell = r * columns + c;
+					cellEdges[cellStart[cell] + fill[cell]++] = i;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finds the squared distance from a point to the nearest edge of the outline,
+	 * if it is less than a given bound
+	 *
+	 * @param px     the x coordinate of the point
+	 * @param py     the y coordinate of the point
+	 * @param bestSq the squared distance to beat
+	 * @return the squared distance to the nearest edge if it is less than bestSq,
+	 *         otherwise bestSq
+	 */
+	double nearestSq(double px, double py, double bestSq) {
+		if (boxDistanceSq(px, py, minX, minY, maxX + 1, maxY + 1) >= bestSq)
+			return bestSq;
+		// Start from the nearest cell in the grid, which is the point's own cell if
+		// the point is inside the grid
+		int cx = clamp(column((int) Math.floor(px)), columns), cy = clamp(row((int) Math.floor(py)), rows);
+		for (int ring = 0;; ring++) {
+			if (ring > 0) {
+				// Everything not yet searched lies outside the square of cells around (cx, cy)
+				// searched so far. Stop if even the edge of that square is too far away.
+				double left = minX + (double) (cx - ring + 1) * cellSize, right = minX + (double) (cx + ring) * cellSize;
+				double top = minY + (double) (cy - ring + 1) * cellSize, bottom = minY + (double) (cy + ring) * cellSize;
+				if (px >= left && px <= right && py >= top && py <= bottom) {
+					double gap = Math.min(Math.min(px - left, right - px), Math.min(py - top, bottom - py));
+					if (gap * gap >= bestSq)
+						return bestSq;
+				}
+			}
+			int r0 = Math.max(0, cy - ring), r1 = Math.min(rows - 1, cy + ring);
+			for (int r = r0; r <= r1; r++) {
+				boolean edgeRow = r == cy - ring || r == cy + ring;
+				int step = edgeRow ? 1 : 2 * ring;
+				for (int c = cx - ring; c <= cx + ring; c += step) {
+					if (c >= 0 && c < columns)
+						bestSq = searchCell(r * columns + c, c, r, px, py, bestSq);
+				}
+			}
+			if (cx - ring <= 0 && cx + ring >= columns - 1 && cy - ring <= 0 && cy + ring >= rows - 1)
+				return bestSq; // The whole grid has been searched
+		}
+	}
+
+	/**
+	 * Tests the edges in one cell, unless the whole cell is too far away
+	 */
+	private double searchCell(int cell, int c, int r, double px, double py, double bestSq) {
+		int start = cellStart[cell], end = cellStart[cell + 1];
+		if (start == end)
+			return bestSq;
+		double left = minX + (double) c * cellSize, top = minY + (double) r * cellSize;
+		if (boxDistanceSq(px, py, left, top, left + cellSize, top + cellSize) >= bestSq)
+			return bestSq;
+		for (int k = start; k < end; k++) {
+			int i = cellEdges[k], next = i + 1 == pointCount ? 0 : i + 1;
+			double distanceSq = Line2D.ptSegDistSq(coords[i * 2], coords[i * 2 + 1], coords[next * 2],
+					coords[next * 2 + 1], px, py);
+			if (distanceSq < bestSq)
+				bestSq = distanceSq;
+		}
+		return bestSq;
+	}
+
+	/**
+	 * Returns the squared distance from a point to a box, or 0 if the point is in
+	 * it
+	 */
+	private static double boxDistanceSq(double px, double py, double left, double top, double right,
+			double bottom) {
+		double dx = Math.max(0, Math.max(left - px, px - right));
+		double dy = Math.max(0, Math.max(top - py, py - bottom));
+		return dx * dx + dy * dy;
+	}
+
+	private int column(int x) {
+		return Math.floorDiv(x - minX, cellSize);
+	}
+
+	private int row(int y) {
+		return Math.floorDiv(y - minY, cellSize);
+	}
+
+	private static int clamp(int index, int count) {
+		return Math.max(0, Math.min(count - 1, index));
+	}
+}
@@ -2,23 +2,29 @@ package processing;
 
 import java.awt.Rectangle;
 import java.awt.geom.Area;
-import java.awt.geom.Line2D;
 import java.awt.geom.Path2D;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.OptionalDouble;
 
 import org.opencv.core.MatOfPoint;
 import org.opencv.core.Point;
-import org.opencv.core.Rect;
-import org.opencv.imgproc.Imgproc;
+
+import cameras.FrameTiming;
+import math.Polygon;
 
 /**
  * Represents a sighting of a target (i.e. a time a pipeline found something of
  * interest). Contains two types of information. <br/>
  * Pixel-based information is available at any time. It is stored in
  * non-optional datatypes. Optional information requires outside processing
- * before it is available. It is stored in OptionalDoubles.
+ * before it is available. It is stored in primitive doubles along with a bit
+ * marking whether each one has been calculated. It can be read either through
+ * the OptionalDouble getters (ex: getCameraBasedYaw()), or, without
+ * allocating, through the primitive accessors (ex: hasCameraBasedYaw() and
+ * cameraBasedYaw()).
  * 
  * @author Jack, Jeff
  *
@@ -27,47 +33,61 @@ public class Sighting {
 	// Pixel-based values. No additional processing necessary.
 	protected int topLeftX, topLeftY; // top left x and y coordinates of this sighting.
 	protected double centerX, centerY; // center x and y coordinates of this sighting
+	protected double centroidX, centroidY; // coordinates of the center of mass of this sighting's area
 	protected double height, width;// the height and width of this sighting in pixels
 	protected double area;// The number of pixels contained by this sighting
 	protected double aspectRatio; // The ratio of the sighting's width to its height
-	protected Rectangle boundingRect; // A rectangle with the same center coordinates, width and height as the
-										// sighting
+	protected volatile Rectangle boundingRect; // A rectangle with the same center coordinates, width and height as
+												// the sighting. Built when first requested.
 	protected double solidity; // The ratio of the sighting's area to its bounding rectangle's area
 	protected int rawSightingCount = 1; // The number of sightings that have been added to this one (+1 for the
 										// original)
-	protected Area contours; // A representation of the shape of this sighting
-	protected List<Point> rawPoints; // The raw OpenCV points passed into the constructor
+	protected Polygon shape; // A compact representation of the shape of this sighting
+	protected volatile Area contours; // The shape of this sighting as an AWT Area. Built when first requested.
+	protected int[] rawCoords = NO_COORDS; // The raw points passed into the constructor, as {x0, y0, x1, y1, ...}.
+											// Replaced, never modified, when sightings are added.
+	protected int rawPointCount; // The number of points in rawCoords
+	protected volatile List<Point> rawPoints; // rawCoords as OpenCV points. Built when first requested.
+	protected FrameTiming frameTiming; // When the frame this sighting came from was captured and processed
+	private volatile SegmentGrid segmentGrid; // Index of the edges between raw points. Built when first needed.
 
 	// Optional values. Must be calculated using external trigonometry. See getters
-	// for in-depth descriptions.
-	protected OptionalDouble robotBasedYaw, cameraBasedDistance, robotBasedDistance, robotBasedRotation,
-			cameraBasedPitch, relativeAspectRatio,
-			cameraBasedYaw = cameraBasedPitch = relativeAspectRatio = robotBasedRotation = cameraBasedDistance = robotBasedYaw = OptionalDouble
-					.empty();
+	// for in-depth descriptions. Only meaningful if their bit in validValues is set.
+	protected double robotBasedYaw, cameraBasedDistance, robotBasedDistance, robotBasedRotation, cameraBasedPitch,
+			relativeAspectRatio, cameraBasedYaw;
+	protected int validValues = 0; // One bit per optional value, set once it has been calculated
+
+	// Bits of validValues
+	protected static final int ROBOT_BASED_YAW = 1, CAMERA_BASED_DISTANCE = 1 << 1, ROBOT_BASED_DISTANCE = 1 << 2,
+			ROBOT_BASED_ROTATION = 1 << 3, CAMERA_BASED_PITCH = 1 << 4, RELATIVE_ASPECT_RATIO = 1 << 5,
+			CAMERA_BASED_YAW = 1 << 6;
+	private static final int ALL_VALUES = (1 << 7) - 1;
+
+	private static final int[] NO_COORDS = new int[0];
 
 	/**
-	 * Creates a sighting object from a contour/MatOfPoint
+	 * Creates a sighting object from a contour/MatOfPoint. The contour's points
+	 * are copied out of OpenCV once, as primitives, and every pixel-based value
+	 * is calculated from that copy.
 	 * 
 	 * @param inputMat the contour to create it from
 	 */
 	public Sighting(MatOfPoint inputMat) {
-		rawPoints = new ArrayList<Point>();
-		Point[] points = inputMat.toArray();
-		this.rawPoints.addAll(inputMat.toList());
-		Path2D.Double poly = new Path2D.Double();
-		for (int i = 1; i < points.length; i++) {
-			poly.moveTo(points[i - 1].x, points[i - 1].y);
-			poly.lineTo(points[i].x % points.length, points[i].y % points.length);
+		rawPointCount = (int) inputMat.total();
+		rawCoords = new int[rawPointCount * 2];
+		if (rawPointCount > 0) {
+			inputMat.get(0, 0, rawCoords);
+			shape = new Polygon(rawCoords, rawPointCount);
+			// Same bounding box as Imgproc.boundingRect(), which counts pixels inclusively
+			topLeftX = shape.getMinX();
+			topLeftY = shape.getMinY();
+			width = shape.getMaxX() - shape.getMinX() + 1;
+			height = shape.getMaxY() - shape.getMinY() + 1;
+			// Same as Imgproc.contourArea()
+			area = shape.area();
+			centroidX = shape.getCentroidX();
+			centroidY = shape.getCentroidY();
 		}
-		Rect processingRect = Imgproc.boundingRect(inputMat);
-		contours = (new Area(poly));
-		height = processingRect.height;
-		width = processingRect.width;
-		topLeftX = processingRect.x;
-		topLeftY = processingRect.y;
-		boundingRect = new Rectangle((int) topLeftX, (int) topLeftY, (int) width, (int) height);
-
-		area = Imgproc.contourArea(inputMat);
 		solidity = area / (width * height);
 		aspectRatio = width / height;
 		centerX = topLeftX + width / 2.0;
@@ -79,30 +99,143 @@ public class Sighting {
 	public Sighting() {
 		
 	}
+
+	/**
+	 * Creates a copy of a sighting, including any values already calculated for
+	 * it. The copy shares the original's point data, which is never modified in
+	 * place, so copying is cheap and combining sightings with the copy leaves the
+	 * original untouched.
+	 * 
+	 * @param sighting the sighting to copy
+	 */
+	public Sighting(Sighting sighting) {
+		topLeftX = sighting.topLeftX;
+		topLeftY = sighting.topLeftY;
+		centerX = sighting.centerX;
+		centerY = sighting.centerY;
+		centroidX = sighting.centroidX;
+		centroidY = sighting.centroidY;
+		height = sighting.height;
+		width = sighting.width;
+		area = sighting.area;
+		aspectRatio = sighting.aspectRatio;
+		solidity = sighting.solidity;
+		rawSightingCount = sighting.rawSightingCount;
+		shape = sighting.shape;
+		rawCoords = sighting.rawCoords;
+		rawPointCount = sighting.rawPointCount;
+		segmentGrid = sighting.segmentGrid;
+		robotBasedYaw = sighting.robotBasedYaw;
+		cameraBasedDistance = sighting.cameraBasedDistance;
+		robotBasedDistance = sighting.robotBasedDistance;
+		robotBasedRotation = sighting.robotBasedRotation;
+		cameraBasedPitch = sighting.cameraBasedPitch;
+		relativeAspectRatio = sighting.relativeAspectRatio;
+		cameraBasedYaw = sighting.cameraBasedYaw;
+		validValues = sighting.validValues;
+		frameTiming = sighting.frameTiming;
+	}
 	
 	/**
-	 * Combines this sighting with another sighting
+	 * Combines this sighting with another sighting. The combined shape is the
+	 * convex hull of both sightings' shapes.
 	 * 
 	 * @param sighting the sighting to combine with this one
 	 */
 	public void addSighting(Sighting sighting) {
+		int[] coords = new int[(rawPointCount + sighting.rawPointCount) * 2];
+		System.arraycopy(rawCoords, 0, coords, 0, rawPointCount * 2);
+		System.arraycopy(sighting.rawCoords, 0, coords, rawPointCount * 2, sighting.rawPointCount * 2);
+		rawCoords = coords;
+		rawPointCount += sighting.rawPointCount;
+		shape = shape == null ? sighting.shape
+				: sighting.shape == null ? shape : shape.unionByHull(sighting.shape);
+		combineValues(sighting);
+		combined();
+	}
+
+	/**
+	 * Combines this sighting with several others at once. Gives the same result
+	 * as calling addSighting() for each of them, but copies the raw points and
+	 * finds the convex hull only once, so combining many sightings takes linear
+	 * rather than quadratic time.
+	 * 
+	 * @param sightings the sightings to combine with this one
+	 */
+	public void addSightings(List<Sighting> sightings) {
+		int count = rawPointCount, vertexCount = shape == null ? 0 : shape.getVertexCount();
+		for (Sighting sighting : sightings) {
+			count += sighting.rawPointCount;
+			vertexCount += sighting.shape == null ? 0 : sighting.shape.getVertexCount();
+		}
+		int[] coords = Arrays.copyOf(rawCoords, count * 2);
+		int[] vertices = new int[vertexCount * 2];
+		int vertex = addVertices(shape, vertices, 0);
+		for (Sighting sighting : sightings) {
+			System.arraycopy(sighting.rawCoords, 0, coords, rawPointCount * 2, sighting.rawPointCount * 2);
+			rawPointCount += sighting.rawPointCount;
+			vertex = addVertices(sighting.shape, vertices, vertex);
+			combineValues(sighting);
+		}
+		rawCoords = coords;
+		if (vertexCount > 0)
+			shape = new Polygon(vertices, vertexCount).convexHull();
+		combined();
+	}
+
+	/**
+	 * Copies a shape's vertices into an array of interleaved coordinates
+	 * 
+	 * @param shape    the shape to copy, or null for none
+	 * @param vertices the array to copy into
+	 * @param index    the index of the first vertex to write
+	 * @return the index after the last vertex written
+	 */
+	private static int addVertices(Polygon shape, int[] vertices, int index) {
+		if (shape != null) {
+			for (int i = 0; i < shape.getVertexCount(); i++, index++) {
+				vertices[index * 2] = shape.getX(i);
+				vertices[index * 2 + 1] = shape.getY(i);
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Adds another sighting's bounds and area to this one's. Does not touch the
+	 * raw points or the shape.
+	 * 
+	 * @param sighting the sighting being combined with this one
+	 */
+	private void combineValues(Sighting sighting) {
 		rawSightingCount += sighting.rawSightingCount;
-		rawPoints.addAll(sighting.getRawPoints());
-		contours.add(sighting.getContours());
-		boundingRect.add(sighting.boundingRect);
-		this.topLeftX = Math.min(sighting.topLeftX, this.topLeftX);
-		this.topLeftY = Math.min(sighting.topLeftY, this.topLeftY);
 		double bottomRightX = Math.max(sighting.topLeftX + sighting.width, this.topLeftX + this.width);
 		double bottomRightY = Math.max(sighting.topLeftY + sighting.height, this.topLeftY + this.height);
+		this.topLeftX = Math.min(sighting.topLeftX, this.topLeftX);
+		this.topLeftY = Math.min(sighting.topLeftY, this.topLeftY);
 		width = bottomRightX - topLeftX;
 		height = bottomRightY - topLeftY;
+		if (area + sighting.area > 0) { // Area-weighted average of the two centroids
+			centroidX = (centroidX * area + sighting.centroidX * sighting.area) / (area + sighting.area);
+			centroidY = (centroidY * area + sighting.centroidY * sighting.area) / (area + sighting.area);
+		}
+		area += sighting.area;
+	}
+
+	/**
+	 * Updates the values that follow from the combined bounds, and clears
+	 * everything that was built from the old points
+	 */
+	private void combined() {
+		rawPoints = null;
+		segmentGrid = null;
+		contours = null;
+		boundingRect = null;
 		centerX = topLeftX + width / 2.0;
 		centerY = topLeftY + height / 2.0;
-		area += sighting.area;
 		solidity = area / (width * height);
 		aspectRatio = width / height;
-		cameraBasedYaw = cameraBasedPitch = robotBasedRotation = cameraBasedDistance = robotBasedYaw = OptionalDouble
-				.empty();
+		validValues = 0; // Values calculated for the separate sightings no longer apply
 	}
 
 	/**
@@ -112,34 +245,112 @@ public class Sighting {
 	 * @return the distance to the given sighting, in pixels
 	 */
 	public double distanceTo(Sighting sighting) {
-		double minDistance = Double.MAX_VALUE; // Assume the furthest possible distance
-		for (int i = 0; i < rawPoints.size(); i++) {
-
-			// grab two adjacent points of this sighting and draw a line between them
-			Point basePoint1 = rawPoints.get(i);
-			Point basePoint2 = rawPoints.get((i + 1) % rawPoints.size());
-			Line2D baseLine = new Line2D.Double(basePoint1.x, basePoint1.y, basePoint2.x, basePoint2.y);
-
-			for (int j = 0; j < sighting.rawPoints.size(); j++) {
-
-				// Grab two adjacent points of the other sighting and draw a line between them
-				Point goalPoint1 = sighting.rawPoints.get(j);
-				Point goalPoint2 = sighting.rawPoints.get((j + 1) % sighting.rawPoints.size());
-				Line2D goalLine = new Line2D.Double(goalPoint1.x, goalPoint1.y, goalPoint2.x, goalPoint2.y);
-
-				// If it is the smallest we've found so far, set minDistance to the square of
-				// the distance from the first goal point
-				// to the base line
-				minDistance = Math.min(minDistance, baseLine.ptSegDistSq(goalPoint1.x, goalPoint1.y));
-				// If it is the smallest we've found so far, set minDistance to the square of
-				// the distance from the first base point
-				// to the goal line
-				minDistance = Math.min(minDistance, goalLine.ptSegDistSq(basePoint1.x, basePoint1.y));
-			}
-		}
+		return distanceTo(sighting, Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Calculates the pixel distance to another sighting, giving up as soon as it
+	 * is known to be at least a given limit. Sightings whose bounding rectangles
+	 * are at least that far apart are rejected without looking at their points,
+	 * which makes this much cheaper than distanceTo(Sighting) when only nearby
+	 * sightings matter. <br/>
+	 * The distance is the shortest distance from a raw point of either sighting
+	 * to the outline of the other. Each outline's edges are indexed in a grid the
+	 * first time they are needed, so large contours take roughly linear time
+	 * instead of comparing every point of one with every edge of the other.
+	 * 
+	 * @param sighting the sighting to find the distance to
+	 * @param limit    the distance beyond which the exact value is not needed
+	 * @return the distance to the given sighting, in pixels, if it is less than
+	 *         limit; otherwise some value no less than limit
+	 */
+	public double distanceTo(Sighting sighting, double limit) {
+		if (rawPointCount == 0 || sighting.rawPointCount == 0)
+			return Math.sqrt(Double.MAX_VALUE); // Nothing to measure to
+		double gapX = Math.max(0, Math.max(sighting.topLeftX - (topLeftX + width - 1),
+				topLeftX - (sighting.topLeftX + sighting.width - 1)));
+		double gapY = Math.max(0, Math.max(sighting.topLeftY - (topLeftY + height - 1),
+				topLeftY - (sighting.topLeftY + sighting.height - 1)));
+		double gapSq = gapX * gapX + gapY * gapY; // No two points can be closer than the bounding rectangles
+		double minDistance = limit * limit;
+		if (gapSq >= minDistance)
+			return Math.sqrt(gapSq);
+
+		// Distance from each point of this sighting to the other's outline, then the
+		// other way around
+		SegmentGrid goal = sighting.getSegmentGrid();
+		for (int i = 0; i < rawPointCount; i++)
+			minDistance = goal.nearestSq(rawCoords[i * 2], rawCoords[i * 2 + 1], minDistance);
+		SegmentGrid base = getSegmentGrid();
+		int[] goalCoords = sighting.rawCoords;
+		for (int j = 0; j < sighting.rawPointCount; j++)
+			minDistance = base.nearestSq(goalCoords[j * 2], goalCoords[j * 2 + 1], minDistance);
 		return Math.sqrt(minDistance);
 	}
 
+	/**
+	 * Returns the grid of edges between this sighting's raw points, building it
+	 * if necessary
+	 * 
+	 * @return the grid
+	 */
+	private SegmentGrid getSegmentGrid() {
+		SegmentGrid grid = segmentGrid;
+		if (grid == null) {
+			grid = new SegmentGrid(rawCoords, rawPointCount);
+			segmentGrid = grid;
+		}
+		return grid;
+	}
+
+	/**
+	 * Stores every value calculated by post-pipeline processing at once
+	 * 
+	 * @param cameraBasedPitch    the pitch relative to the camera, in radians
+	 * @param cameraBasedYaw      the yaw relative to the camera, in radians
+	 * @param cameraBasedDistance the distance from the camera
+	 * @param robotBasedDistance  the distance from the center of the robot
+	 * @param robotBasedYaw       the yaw relative to the center of the robot, in
+	 *                            radians
+	 * @param relativeAspectRatio the ratio of this sighting's aspect ratio to the
+	 *                            target's
+	 * @param robotBasedRotation  the rotation of the target relative to the robot,
+	 *                            in radians
+	 */
+	void setProcessedValues(double cameraBasedPitch, double cameraBasedYaw, double cameraBasedDistance,
+			double robotBasedDistance, double robotBasedYaw, double relativeAspectRatio, double robotBasedRotation) {
+		this.cameraBasedPitch = cameraBasedPitch;
+		this.cameraBasedYaw = cameraBasedYaw;
+		this.cameraBasedDistance = cameraBasedDistance;
+		this.robotBasedDistance = robotBasedDistance;
+		this.robotBasedYaw = robotBasedYaw;
+		this.relativeAspectRatio = relativeAspectRatio;
+		this.robotBasedRotation = robotBasedRotation;
+		validValues = ALL_VALUES;
+	}
+
+	/**
+	 * Wraps an optional value for the OptionalDouble getters
+	 * 
+	 * @param value the value
+	 * @param bit   the value's bit in validValues
+	 * @return the value, or OptionalDouble.empty() if it hasn't been calculated
+	 */
+	private OptionalDouble optional(double value, int bit) {
+		return (validValues & bit) != 0 ? OptionalDouble.of(value) : OptionalDouble.empty();
+	}
+
+	/**
+	 * Returns an optional value for the primitive accessors
+	 * 
+	 * @param value the value
+	 * @param bit   the value's bit in validValues
+	 * @return the value, or Double.NaN if it hasn't been calculated
+	 */
+	private double primitive(double value, int bit) {
+		return (validValues & bit) != 0 ? value : Double.NaN;
+	}
+
 	/**
 	 * Returns a string representation of the sighting for debugging
 	 * 
@@ -160,7 +371,26 @@ public class Sighting {
 	 * @return the relative aspect ratio of this sighting
 	 */
 	public OptionalDouble getRelativeAspectRatio() {
-		return relativeAspectRatio;
+		return optional(relativeAspectRatio, RELATIVE_ASPECT_RATIO);
+	}
+
+	/**
+	 * Returns whether the relative aspect ratio of this sighting has been calculated
+	 * 
+	 * @return true if relativeAspectRatio() holds a value
+	 */
+	public boolean hasRelativeAspectRatio() {
+		return (validValues & RELATIVE_ASPECT_RATIO) != 0;
+	}
+
+	/**
+	 * Returns the relative aspect ratio of this sighting without allocating. See
+	 * getRelativeAspectRatio() for what it means.
+	 * 
+	 * @return the value, or Double.NaN if it has not been calculated
+	 */
+	public double relativeAspectRatio() {
+		return primitive(relativeAspectRatio, RELATIVE_ASPECT_RATIO);
 	}
 
 	/**
@@ -171,7 +401,8 @@ public class Sighting {
 	 * @param relativeAspectRatio the ratio of aspect ratios to save
 	 */
 	protected void setRelativeAspectRatio(double relativeAspectRatio) {
-		this.relativeAspectRatio = OptionalDouble.of(relativeAspectRatio);
+		this.relativeAspectRatio = relativeAspectRatio;
+		validValues |= RELATIVE_ASPECT_RATIO;
 	}
 
 	/**
@@ -186,7 +417,26 @@ public class Sighting {
 	 *         robot at the camera's depth
 	 */
 	public OptionalDouble getRobotBasedYaw() {
-		return robotBasedYaw;
+		return optional(robotBasedYaw, ROBOT_BASED_YAW);
+	}
+
+	/**
+	 * Returns whether the robot-based yaw of this sighting has been calculated
+	 * 
+	 * @return true if robotBasedYaw() holds a value
+	 */
+	public boolean hasRobotBasedYaw() {
+		return (validValues & ROBOT_BASED_YAW) != 0;
+	}
+
+	/**
+	 * Returns the robot-based yaw of this sighting without allocating. See
+	 * getRobotBasedYaw() for what it means.
+	 * 
+	 * @return the value, or Double.NaN if it has not been calculated
+	 */
+	public double robotBasedYaw() {
+		return primitive(robotBasedYaw, ROBOT_BASED_YAW);
 	}
 
 	/**
@@ -198,7 +448,8 @@ public class Sighting {
 	 * @param robotBasedYaw the angle to save
 	 */
 	public void setRobotBasedYaw(double robotBasedYaw) {
-		this.robotBasedYaw = OptionalDouble.of(robotBasedYaw);
+		this.robotBasedYaw = robotBasedYaw;
+		validValues |= ROBOT_BASED_YAW;
 	}
 
 	/**
@@ -211,7 +462,26 @@ public class Sighting {
 	 * @return the distance in the target height's units
 	 */
 	public OptionalDouble getRobotBasedDistance() {
-		return robotBasedDistance;
+		return optional(robotBasedDistance, ROBOT_BASED_DISTANCE);
+	}
+
+	/**
+	 * Returns whether the robot-based distance of this sighting has been calculated
+	 * 
+	 * @return true if robotBasedDistance() holds a value
+	 */
+	public boolean hasRobotBasedDistance() {
+		return (validValues & ROBOT_BASED_DISTANCE) != 0;
+	}
+
+	/**
+	 * Returns the robot-based distance of this sighting without allocating. See
+	 * getRobotBasedDistance() for what it means.
+	 * 
+	 * @return the value, or Double.NaN if it has not been calculated
+	 */
+	public double robotBasedDistance() {
+		return primitive(robotBasedDistance, ROBOT_BASED_DISTANCE);
 	}
 
 	/**
@@ -222,7 +492,8 @@ public class Sighting {
 	 * @param distance the distance to save
 	 */
 	public void setRobotBasedDistance(double distance) {
-		robotBasedDistance = OptionalDouble.of(distance);
+		robotBasedDistance = distance;
+		validValues |= ROBOT_BASED_DISTANCE;
 	}
 
 	/**
@@ -234,7 +505,26 @@ public class Sighting {
 	 * @return the distance in the target height's units
 	 */
 	public OptionalDouble getCameraBasedDistance() {
-		return cameraBasedDistance;
+		return optional(cameraBasedDistance, CAMERA_BASED_DISTANCE);
+	}
+
+	/**
+	 * Returns whether the camera-based distance of this sighting has been calculated
+	 * 
+	 * @return true if cameraBasedDistance() holds a value
+	 */
+	public boolean hasCameraBasedDistance() {
+		return (validValues & CAMERA_BASED_DISTANCE) != 0;
+	}
+
+	/**
+	 * Returns the camera-based distance of this sighting without allocating. See
+	 * getCameraBasedDistance() for what it means.
+	 * 
+	 * @return the value, or Double.NaN if it has not been calculated
+	 */
+	public double cameraBasedDistance() {
+		return primitive(cameraBasedDistance, CAMERA_BASED_DISTANCE);
 	}
 
 	/**
@@ -244,7 +534,8 @@ public class Sighting {
 	 * @param distance the distance to save
 	 */
 	public void setCameraBasedDistance(double distance) {
-		this.cameraBasedDistance = OptionalDouble.of(distance);
+		this.cameraBasedDistance = distance;
+		validValues |= CAMERA_BASED_DISTANCE;
 	}
 
 	/**
@@ -260,7 +551,26 @@ public class Sighting {
 	 * @return the angle of the target relative to the robot, in radians
 	 */
 	public OptionalDouble getRobotBasedRotation() {
-		return robotBasedRotation;
+		return optional(robotBasedRotation, ROBOT_BASED_ROTATION);
+	}
+
+	/**
+	 * Returns whether the robot-based rotation of this sighting has been calculated
+	 * 
+	 * @return true if robotBasedRotation() holds a value
+	 */
+	public boolean hasRobotBasedRotation() {
+		return (validValues & ROBOT_BASED_ROTATION) != 0;
+	}
+
+	/**
+	 * Returns the robot-based rotation of this sighting without allocating. See
+	 * getRobotBasedRotation() for what it means.
+	 * 
+	 * @return the value, or Double.NaN if it has not been calculated
+	 */
+	public double robotBasedRotation() {
+		return primitive(robotBasedRotation, ROBOT_BASED_ROTATION);
 	}
 
 	/**
@@ -270,7 +580,8 @@ public class Sighting {
 	 * @param robotBasedRotation the angle to save
 	 */
 	public void setRobotBasedRotation(double robotBasedRotation) {
-		this.robotBasedRotation = OptionalDouble.of(robotBasedRotation);
+		this.robotBasedRotation = robotBasedRotation;
+		validValues |= ROBOT_BASED_ROTATION;
 	}
 
 	/**
@@ -282,7 +593,26 @@ public class Sighting {
 	 * @return the pitch relative to the camera, in radians
 	 */
 	public OptionalDouble getCameraBasedPitch() {
-		return cameraBasedPitch;
+		return optional(cameraBasedPitch, CAMERA_BASED_PITCH);
+	}
+
+	/**
+	 * Returns whether the camera-based pitch of this sighting has been calculated
+	 * 
+	 * @return true if cameraBasedPitch() holds a value
+	 */
+	public boolean hasCameraBasedPitch() {
+		return (validValues & CAMERA_BASED_PITCH) != 0;
+	}
+
+	/**
+	 * Returns the camera-based pitch of this sighting without allocating. See
+	 * getCameraBasedPitch() for what it means.
+	 * 
+	 * @return the value, or Double.NaN if it has not been calculated
+	 */
+	public double cameraBasedPitch() {
+		return primitive(cameraBasedPitch, CAMERA_BASED_PITCH);
 	}
 
 	/**
@@ -292,7 +622,8 @@ public class Sighting {
 	 * @param cameraBasedPitch the camera-based pitch to save
 	 */
 	public void setCameraBasedPitch(double cameraBasedPitch) {
-		this.cameraBasedPitch = OptionalDouble.of(cameraBasedPitch);
+		this.cameraBasedPitch = cameraBasedPitch;
+		validValues |= CAMERA_BASED_PITCH;
 	}
 
 	/**
@@ -304,7 +635,26 @@ public class Sighting {
 	 * @return the yaw relative to the camera, in radians
 	 */
 	public OptionalDouble getCameraBasedYaw() {
-		return cameraBasedYaw;
+		return optional(cameraBasedYaw, CAMERA_BASED_YAW);
+	}
+
+	/**
+	 * Returns whether the camera-based yaw of this sighting has been calculated
+	 * 
+	 * @return true if cameraBasedYaw() holds a value
+	 */
+	public boolean hasCameraBasedYaw() {
+		return (validValues & CAMERA_BASED_YAW) != 0;
+	}
+
+	/**
+	 * Returns the camera-based yaw of this sighting without allocating. See
+	 * getCameraBasedYaw() for what it means.
+	 * 
+	 * @return the value, or Double.NaN if it has not been calculated
+	 */
+	public double cameraBasedYaw() {
+		return primitive(cameraBasedYaw, CAMERA_BASED_YAW);
 	}
 
 	/**
@@ -314,7 +664,8 @@ public class Sighting {
 	 * @param cameraBasedYaw the yaw value to save
 	 */
 	public void setCameraBasedYaw(double cameraBasedYaw) {
-		this.cameraBasedYaw = OptionalDouble.of(cameraBasedYaw);
+		this.cameraBasedYaw = cameraBasedYaw;
+		validValues |= CAMERA_BASED_YAW;
 	}
 
 	/**
@@ -353,6 +704,28 @@ public class Sighting {
 		return centerY;
 	}
 
+	/**
+	 * Returns the x coordinate of the centroid (center of mass) of this
+	 * sighting's area. Unlike getCenterX(), this is not necessarily the center of
+	 * the bounding rectangle.
+	 * 
+	 * @return the x coordinate, i.e. pixels from the left side of the image
+	 */
+	public double getCentroidX() {
+		return centroidX;
+	}
+
+	/**
+	 * Returns the y coordinate of the centroid (center of mass) of this
+	 * sighting's area. Unlike getCenterY(), this is not necessarily the center of
+	 * the bounding rectangle.
+	 * 
+	 * @return the y coordinate, i.e. pixels from the top of the image
+	 */
+	public double getCentroidY() {
+		return centroidY;
+	}
+
 	/**
 	 * Returns the height of this sighting in pixels
 	 * 
@@ -416,21 +789,90 @@ public class Sighting {
 
 	/**
 	 * Returns a Java.awt.geom.Area object that represents the contours of this
-	 * sighting. Used for advanced processing.
+	 * sighting. Used for advanced processing. The Area is only built the first
+	 * time this is called; for cheaper geometry, see getShape().
 	 * 
-	 * @return the Area representing this sighting's contours.
+	 * @return the Area representing this sighting's contours, or null for a
+	 *         sighting with no shape.
 	 */
 	public Area getContours() {
-		return contours;
+		Area area = contours;
+		if (area == null && shape != null) {
+			Path2D.Double poly = new Path2D.Double();
+			poly.moveTo(shape.getX(0), shape.getY(0));
+			for (int i = 1; i < shape.getVertexCount(); i++) {
+				poly.lineTo(shape.getX(i), shape.getY(i));
+			}
+			poly.closePath();
+			contours = area = new Area(poly);
+		}
+		return area;
 	}
 
 	/**
-	 * Returns the raw points that were used to make this Sighting
+	 * Returns the shape of this sighting as a compact polygon, with a cheap
+	 * bounding box, area and point-in-polygon test. For a sighting made from
+	 * several others with addSighting(), this is the convex hull of their shapes.
 	 * 
-	 * @return the Points that were passed into the constructor of this Sighting
+	 * @return the polygon outlining this sighting, or null for a sighting with no
+	 *         shape
+	 */
+	public Polygon getShape() {
+		return shape;
+	}
+
+	/**
+	 * Returns the raw points that were used to make this Sighting. The list is
+	 * only built the first time this is called and is shared by every caller, so
+	 * it is read-only, and its points must not be modified; changing them would
+	 * not change the sighting. For allocation-free access, see getRawPointCount(),
+	 * getRawX() and getRawY().
+	 * 
+	 * @return a read-only list of the Points that were passed into the
+	 *         constructor of this Sighting
 	 */
 	public List<Point> getRawPoints() {
-		return rawPoints;
+		List<Point> points = rawPoints;
+		if (points == null) {
+			points = new ArrayList<>(rawPointCount);
+			for (int i = 0; i < rawPointCount; i++) {
+				points.add(new Point(rawCoords[i * 2], rawCoords[i * 2 + 1]));
+			}
+			points = Collections.unmodifiableList(points);
+			rawPoints = points;
+		}
+		return points;
+	}
+
+	/**
+	 * Returns the number of raw points that were used to make this Sighting
+	 * 
+	 * @return the number of points
+	 */
+	public int getRawPointCount() {
+		return rawPointCount;
+	}
+
+	/**
+	 * Returns the x coordinate of one of the raw points used to make this
+	 * Sighting
+	 * 
+	 * @param i the index of the point
+	 * @return its x coordinate, in pixels
+	 */
+	public int getRawX(int i) {
+		return rawCoords[i * 2];
+	}
+
+	/**
+	 * Returns the y coordinate of one of the raw points used to make this
+	 * Sighting
+	 * 
+	 * @param i the index of the point
+	 * @return its y coordinate, in pixels
+	 */
+	public int getRawY(int i) {
+		return rawCoords[i * 2 + 1];
 	}
 
 	/**
@@ -440,7 +882,32 @@ public class Sighting {
 	 *         this sighting.
 	 */
 	public Rectangle getBoundingRect() {
-		return boundingRect;
+		Rectangle rect = boundingRect;
+		if (rect == null) {
+			boundingRect = rect = new Rectangle(topLeftX, topLeftY, (int) width, (int) height);
+		}
+		return rect;
+	}
+
+	/**
+	 * Returns when the frame this sighting came from was captured, processed and
+	 * published. Set when the frame is published.
+	 * 
+	 * @return the frame's timing, or null if the sighting has not been published
+	 *         by a camera
+	 */
+	public FrameTiming getFrameTiming() {
+		return frameTiming;
+	}
+
+	/**
+	 * Sets the timing of the frame this sighting came from. Called once, when the
+	 * frame is published (see SightingContainer.setFrameTiming()).
+	 * 
+	 * @param frameTiming the frame's timing
+	 */
+	void setFrameTiming(FrameTiming frameTiming) {
+		this.frameTiming = frameTiming;
 	}
 
-}
\ No newline at end of file
+}
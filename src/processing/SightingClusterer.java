@@ -0,0 +1,223 @@
+package processing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Groups sightings that lie within a merge distance of each other and combines
+ * each group into a single sighting. Used to put back together targets that a
+ * pipeline finds as several pieces, such as reflective tape broken up by
+ * glare. <br/>
+ * Candidate pairs are found by placing the sightings' bounding rectangles in a
+ * uniform grid, so only sightings in nearby cells are ever compared, and
+ * groups are built with union-find. A frame full of small, scattered contours
+ * therefore costs roughly linear time rather than comparing every pair. <br/>
+ * A clusterer keeps its working arrays between calls, so it should not be
+ * shared between threads. Each SightingContainer has its own.
+ *
+ * @author Jeff
+ *
+ */
+public class SightingClusterer {
+	// Working arrays, grown as needed and reused between calls
+	private int[] minX = new int[0], minY = new int[0], maxX = new int[0], maxY = new int[0]; // Bounding boxes
+	private int[] parent = new int[0], size = new int[0]; // Union-find forest
+	private int[] lastCompared = new int[0]; // The last sighting each sighting was compared with
+	private int[] cellStart = new int[1], cellSightings = new int[0]; // The grid, as offsets into one array
+	private int[] groupStart = new int[0], groupFill = new int[0]; // Where each group's members start, by root
+	private int[] members = new int[0]; // Every group's members, one group after another
+	private final ArrayList<Sighting> group = new ArrayList<>(); // The members being added to a combined sighting
+
+	/**
+	 * Combines every group of sightings that are within a merge distance of each
+	 * other, directly or through other sightings in the group. Sightings that are
+	 * not near any other are kept as they are. A combined sighting is a new
+	 * sighting (see Sighting.addSightings()); the sightings it was made from are
+	 * not modified. <br/>
+	 * The list is changed in place: each group takes the position of its first
+	 * member, and the order of groups follows the order of the list.
+	 *
+	 * @param sightings     the sightings to combine
+	 * @param mergeDistance sightings closer than this (see Sighting.distanceTo())
+	 *                      are grouped together, in pixels. Nothing is merged if
+	 *                      this is 0 or less, and everything is merged if it is
+	 *                      Double.POSITIVE_INFINITY.
+	 */
+	public void cluster(ArrayList<Sighting> sightings, double mergeDistance) {
+		int n = sightings.size();
+		if (n < 2 || !(mergeDistance > 0))
+			return;
+		ensureCapacity(n);
+
+		// Bounding boxes, the area they cover, and their average size
+		int left = Integer.MAX_VALUE, top = Integer.MAX_VALUE, right = Integer.MIN_VALUE, bottom = Integer.MIN_VALUE;
+		long totalExtent = 0;
+		for (int i = 0; i < n; i++) {
+			Sighting s = sightings.get(i);
+			minX[i] = s.getTopLeftX();
+			minY[i] = s.getTopLeftY();
+			maxX[i] = minX[i] + Math.max(0, (int) s.getWidth() - 1);
+			maxY[i] = minY[i] + Math.max(0, (int) s.getHeight() - 1);
+			left = Math.min(left, minX[i]);
+			top = Math.min(top, minY[i]);
+			right = Math.max(right, maxX[i]);
+			bottom = Math.max(bottom, maxY[i]);
+			totalExtent += Math.max(maxX[i] - minX[i], maxY[i] - minY[i]) + 1;
+			parent[i] = i;
+			size[i] = 1;
+			lastCompared[i] = -1;
+		}
+
+		// How far to search around each sighting. Searching further than the extent of
+		// all the sightings finds nothing more, and would overflow for huge or infinite
+		// merge distances.
+		double searchDistance = Math.min(mergeDistance, Math.max(right - left, bottom - top) + 1);
+
+		// Cells at least as large as the search distance and an average sighting, and
+		// large enough that there are about as many cells as sightings
+		double areaPerSighting = Math.sqrt((double) (right - left + 1) * (bottom - top + 1) / n);
+		int cellSize = (int) Math.ceil(Math.max(Math.max(searchDistance, (double) totalExtent / n), areaPerSighting));
+		int columns = (right - left) / cellSize + 1, rows = (bottom - top) / cellSize + 1;
+		buildGrid(n, left, top, cellSize, columns, rows);
+
+		// Compare each sighting with those in the cells its bounding box, grown by the
+		// merge distance, overlaps
+		int reach = (int) Math.ceil(searchDistance);
+		for (int i = 0; i < n; i++) {
+			int c0 = Math.max(0, (minX[i] - reach - left) / cellSize);
+			int c1 = Math.min(columns - 1, (maxX[i] + reach - left) / cellSize);
+			int r0 = Math.max(0, (minY[i] - reach - top) / cellSize);
+			int r1 = Math.min(rows - 1, (maxY[i] + reach - top) / cellSize);
+			for (int r = r0; r <= r1; r++) {
+				for (int c = c0; c <= c1; c++) {
+					int cell = r * columns + c;
+					for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+						int j = cellSightings[k];
+						if (j <= i || lastCompared[j] == i)
+							continue; // Each pair once, even if they share several cells
+						lastCompared[j] = i;
+						if (find(i) != find(j) && boxGapSq(i, j) < mergeDistance * mergeDistance
+								&& sightings.get(i).distanceTo(sightings.get(j), mergeDistance) < mergeDistance) {
+							union(i, j);
+						}
+					}
+				}
+			}
+		}
+
+		// List the members of each group together, in their original order
+		int cursor = 0;
+		for (int i = 0; i < n; i++)
+			groupStart[i] = -1;
+		for (int i = 0; i < n; i++) {
+			int root = find(i);
+			if (groupStart[root] < 0) {
+				groupStart[root] = groupFill[root] = cursor;
+				cursor += size[root];
+			}
+			members[groupFill[root]++] = i;
+		}
+
+		// Combine each group into its first member's position. Later members are
+		// always further along the list than the position being written.
+		int kept = 0;
+		for (int i = 0; i < n; i++) {
+			int root = find(i);
+			if (members[groupStart[root]] != i)
+				continue;
+			Sighting first = sightings.get(i);
+			if (size[root] == 1) {
+				sightings.set(kept++, first);
+			} else {
+				Sighting combined = new Sighting(first);
+				for (int k = groupStart[root] + 1; k < groupStart[root] + size[root]; k++)
+					group.add(sightings.get(members[k]));
+				combined.addSightings(group);
+				group.clear();
+				sightings.set(kept++, combined);
+			}
+		}
+		sightings.subList(kept, n).clear();
+	}
+
+	/**
+	 * Places each sighting's bounding box in every grid cell it overlaps
+	 */
+	private void buildGrid(int n, int left, int top, int cellSize, int columns, int rows) {
+		int cells = columns * rows;
+		if (cellStart.length < cells + 1)
+			cellStart = new int[cells + 1];
+		Arrays.fill(cellStart, 0, cells + 1, 0);
+		for (int i = 0; i < n; i++) {
+			for (int r = (minY[i] - top) / cellSize; r <= (maxY[i] - top) / cellSize; r++)
+				for (int c = (minX[i] - left) / cellSize; c <= (maxX[i] - left) / cellSize; c++)
+					cellStart[r * columns + c + 1]++;
+		}
+		for (int c = 0; c < cells; c++)
+			cellStart[c + 1] += cellStart[c];
+		if (cellSightings.length < cellStart[cells])
+			cellSightings = new int[cellStart[cells]];
+		// Fill each cell from its end, which leaves cellStart[c + 1] at the start of
+		// cell c, then shift the offsets back into place
+		int total = cellStart[cells];
+		for (int i = n - 1; i >= 0; i--) {
+			for (int r = (minY[i] - top) / cellSize; r <= (maxY[i] - top) / cellSize; r++)
+				for (int c = (minX[i] - left) / cellSize; c <= (maxX[i] - left) / cellSize; c++)
+					cellSightings[--cellStart[r * columns + c + 1]] = i;
+		}
+		System.arraycopy(cellStart, 1, cellStart, 0, cells);
+		cellStart[cells] = total;
+	}
+
+	/**
+	 * Returns the squared distance between the bounding boxes of two sightings
+	 */
+	private double boxGapSq(int i, int j) {
+		double dx = Math.max(0, Math.max(minX[j] - maxX[i], minX[i] - maxX[j]));
+		double dy = Math.max(0, Math.max(minY[j] - maxY[i], minY[i] - maxY[j]));
+		return dx * dx + dy * dy;
+	}
+
+	/**
+	 * Returns the root of a sighting's group, halving the path to it on the way
+	 */
+	private int find(int i) {
+		while (parent[i] != i) {
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+
+	/**
+	 * Joins the groups of two sightings, keeping the larger group's root
+	 */
+	private void union(int i, int j) {
+		int a = find(i), b = find(j);
+		if (a == b)
+			return;
+		if (size[a] < size[b]) {
+			int swap = a;
+			a = b;
+			b = swap;
+		}
+		parent[b] = a;
+		size[a] += size[b];
+	}
+
+	private void ensureCapacity(int n) {
+		if (parent.length >= n)
+			return;
+		int capacity = Math.max(n, parent.length * 2);
+		minX = new int[capacity];
+		minY = new int[capacity];
+		maxX = new int[capacity];
+		maxY = new int[capacity];
+		parent = new int[capacity];
+		size = new int[capacity];
+		lastCompared = new int[capacity];
+		groupStart = new int[capacity];
+		groupFill = new int[capacity];
+		members = new int[capacity];
+	}
+}
@@ -1,15 +1,27 @@
 package processing;
 
-import java.awt.geom.Point2D;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import cameras.CVCamera;
 import cameras.Camera;
+import cameras.FrameTiming;
 import math.CameraMath;
+import math.CameraModel;
+import metrics.LatencyHistogram;
+import metrics.StageMetrics;
 
 /**
  * A class meant for storing the sightings of a particular target by a
- * particular camera. Each camera-target pair defines one.
+ * particular camera. Each camera-target pair defines one. <br/>
+ * Each step of updating the sightings is timed into the camera's metrics for
+ * the target (see CVCamera.getMetrics(VisionTarget)): combining nearby
+ * sightings ("cluster"), the pre-processing filters ("preFilter"), calculating
+ * values ("calculate"), the post-processing filters ("postFilter"), tracking
+ * ("track") and recording history ("history"). The number of sightings before
+ * and after filtering are counted as "raw" and "published".
  * 
  * @author Jeff
  *
@@ -18,8 +30,16 @@ public class SightingContainer {
 
 	private ArrayList<Sighting> rawSightings = new ArrayList<>();// Raw, unfiltered, unprocessed sightings
 	private ArrayList<Sighting> processedSightings = new ArrayList<>();// Filtered, processed, valid sightings
+	private List<Sighting> publishedSightings = Collections.emptyList();// Read-only view of processedSightings
+	private boolean timed = true; // Whether processedSightings have been given their frame's timing
 	private CVCamera camera;
 	private VisionTarget visionTarget;
+	private final SightingClusterer clusterer = new SightingClusterer(); // Combines nearby raw sightings
+	private TargetTracker tracker; // Follows sightings between frames, if the target is tracked
+	private List<Track> publishedTracks = Collections.emptyList();
+	private volatile SightingHistory history; // Recent frames, if the target keeps a history
+	private final LatencyHistogram clusterTime, preFilterTime, calculateTime, postFilterTime, trackTime, historyTime;
+	private final AtomicLong rawCount, publishedCount;
 
 	/**
 	 * Creates the CVCamera SightingContainer
@@ -30,15 +50,26 @@ public class SightingContainer {
 	public SightingContainer(CVCamera c, VisionTarget v) {
 		this.camera = c;
 		this.visionTarget = v;
+		StageMetrics metrics = c.getMetrics(v); // Each step's timing is looked up once
+		clusterTime = metrics.stage("cluster");
+		preFilterTime = metrics.stage("preFilter");
+		calculateTime = metrics.stage("calculate");
+		postFilterTime = metrics.stage("postFilter");
+		trackTime = metrics.stage("track");
+		historyTime = metrics.stage("history");
+		rawCount = metrics.counter("raw");
+		publishedCount = metrics.counter("published");
 	}
 
 	/**
-	 * Returns the most recent target sightings from the given camera
+	 * Returns the most recent target sightings from the given camera. The list is
+	 * never modified after it is returned; the next frame's sightings are stored
+	 * in a new list.
 	 * 
-	 * @return a list of all the sightings
+	 * @return a read-only list of all the sightings
 	 */
-	public ArrayList<Sighting> getSightings() {
-		return new ArrayList<>(processedSightings);
+	public List<Sighting> getSightings() {
+		return publishedSightings;
 	}
 
 	/**
@@ -49,7 +80,26 @@ public class SightingContainer {
 	 * @param processedSightings a list of processed sightings to save in this SightingContainer
 	 */
 	public void setSightings(ArrayList<Sighting> processedSightings) {
-		this.processedSightings=processedSightings;
+		this.processedSightings = new ArrayList<>(processedSightings);
+		publishedSightings = Collections.unmodifiableList(this.processedSightings);
+		timed = false;
+	}
+
+	/**
+	 * Gives the current sightings the timing of the frame they are published in.
+	 * Only the first call after the sightings are updated has any effect, so
+	 * sightings that were already published, for example because no pipeline has
+	 * looked for the target since, keep their own frame's timing.
+	 * 
+	 * @param timing the timing of the frame being published
+	 */
+	public void setFrameTiming(FrameTiming timing) {
+		if (timed)
+			return;
+		for (Sighting sighting : processedSightings) {
+			sighting.setFrameTiming(timing);
+		}
+		timed = true;
 	}
 
 	/**
@@ -62,99 +112,134 @@ public class SightingContainer {
 	}
 
 	/**
-	 * Updates the data from the CVCamera
+	 * Updates the data from the CVCamera, treating the frame as captured now
 	 * 
 	 * @param polys the data from the CVCamera
 	 */
 	public void updateObjects(ArrayList<Sighting> polys) {
-		rawSightings.clear();
-		rawSightings.addAll(polys);
-		rawSightings = visionTarget.validateRawSightings(rawSightings);
-		calculateCameraBasedPitches();
-		calculateCameraBasedDistances();
-		calculateCameraBasedYaws();
-		placementAdjustCartesian();
-		calculateRelativeAspectRatios();
-		calculateRotations();
-		processedSightings = visionTarget.validateProcessedSightings(new ArrayList<>(rawSightings));
+		updateObjects(polys, System.nanoTime());
 	}
 
 	/**
-	 * Uses the center y pixel of the sightings to calculate the vertical angles
-	 * from the camera to each sighting, then stores them in the sightings.
+	 * Updates the data from the CVCamera
+	 * 
+	 * @param polys        the data from the CVCamera
+	 * @param captureNanos when the frame was captured, from System.nanoTime().
+	 *                     Used to time tracks and history.
 	 */
-	private void calculateCameraBasedPitches() {
+	public void updateObjects(ArrayList<Sighting> polys, long captureNanos) {
+		// Tracking and history may be enabled after the container is made, so
+		// they are created by the first frame that finds them enabled
+		if (tracker == null && visionTarget.isTrackingEnabled())
+			tracker = visionTarget.createTracker();
+		if (history == null && visionTarget.isHistoryEnabled())
+			history = visionTarget.createHistory();
+		long start = System.nanoTime();
+		rawSightings.clear();
+		rawSightings.addAll(polys);
+		rawCount.addAndGet(polys.size());
+		clusterer.cluster(rawSightings, visionTarget.getMergeDistance());
+		long now = System.nanoTime();
+		clusterTime.record(now - start);
+		start = now;
+		rawSightings = visionTarget.validateRawSightings(rawSightings);
+		now = System.nanoTime();
+		preFilterTime.record(now - start);
+		start = now;
+		CameraModel model = camera.getModel();
+		double targetHeight = visionTarget.getHeight(), targetAspectRatio = visionTarget.getAspectRatio();
 		for (Sighting s : rawSightings) {
-			s.setCameraBasedPitch(
-					CameraMath.getYAngle(s.getCenterY(), camera.getPixelHeight(), camera.getVerticalFOV()));
+			calculate(s, model, targetHeight, targetAspectRatio);
+		}
+		now = System.nanoTime();
+		calculateTime.record(now - start);
+		start = now;
+		processedSightings = visionTarget.validateProcessedSightings(new ArrayList<>(rawSightings));
+		publishedSightings = Collections.unmodifiableList(processedSightings);
+		timed = false;
+		publishedCount.addAndGet(processedSightings.size());
+		now = System.nanoTime();
+		postFilterTime.record(now - start);
+		if (tracker != null) {
+			start = now;
+			publishedTracks = tracker.update(processedSightings, captureNanos);
+			now = System.nanoTime();
+			trackTime.record(now - start);
+		}
+		if (history != null) {
+			start = now;
+			history.record(captureNanos, processedSightings);
+			historyTime.record(System.nanoTime() - start);
 		}
 	}
 
 	/**
-	 * Uses the vertical angle from the camera to the sightings to calculate the
-	 * distances from the camera to each sighting, then stores the distances in the
-	 * sightings.
+	 * Returns the history of recent frames of this target, if the target keeps
+	 * one (see VisionTarget.enableHistory())
+	 * 
+	 * @return the history, or null if the target does not keep one or no frame
+	 *         has been processed since it was enabled
 	 */
-	private void calculateCameraBasedDistances() {
-		for (Sighting s : rawSightings) {
-			s.setCameraBasedDistance(CameraMath.calculateDistance(s.getCameraBasedPitch().getAsDouble(),
-					camera.getVerticalAngle(), visionTarget.getHeight(), camera.getVerticalOffset()));
-		}
+	public SightingHistory getHistory() {
+		return history;
 	}
 
 	/**
-	 * Uses the center x pixel of the sightings to calculate the horizontal angles
-	 * from the camera to the sightings, then stores them in the sightings.
+	 * Returns the tracks of this target after the most recent frame, if the
+	 * target is tracked (see VisionTarget.enableTracking())
+	 * 
+	 * @return a read-only list of tracks, oldest first. Empty if the target is not
+	 *         tracked.
 	 */
-	private void calculateCameraBasedYaws() {
-		for (Sighting s : rawSightings) {
-			s.setCameraBasedYaw(
-					CameraMath.getXAngle(s.getCenterX(), camera.getPixelWidth(), camera.getHorizontalFOV()));
-		}
+	public List<Track> getTracks() {
+		return publishedTracks;
 	}
 
 	/**
-	 * Adjusts for the placement of the camera on the robot using cartesian
-	 * coordinates. Treats the camera as a point (horizontalOffset, -depthOffset),
-	 * then calculates the distance and angle of the sighting relative to the origin
-	 * (usually the center of the robot)
+	 * Calculates every derived value of a sighting in one pass, keeping
+	 * intermediate results in local variables, then stores them all in the
+	 * sighting at once. Camera-based angles the sighting already has are reused.
+	 * 
+	 * @param s                 the sighting to calculate values for
+	 * @param model             the model of the camera
+	 * @param targetHeight      the height of the target off the ground
+	 * @param targetAspectRatio the aspect ratio of the target
 	 */
-	private void placementAdjustCartesian() {
-		for (Sighting s : rawSightings) {
-			Point2D p = CameraMath.calcSightingCoords(s.getCameraBasedDistance().getAsDouble(),
-					s.getCameraBasedYaw().getAsDouble(), camera.getHorizontalOffset(), camera.getDepthOffset(),
-					camera.getHorizontalAngle());
-			// From that, find the distance and angle of the sighting from the origin.
-			s.setRobotBasedDistance(p.distance(0, 0));
-			s.setRobotBasedYaw(CameraMath.calcRobotAngle(p));
-		}
+	private static void calculate(Sighting s, CameraModel model, double targetHeight, double targetAspectRatio) {
+		double centerX = s.getCenterX(), centerY = s.getCenterY();
 
-	}
+		// Vertical and horizontal angles from the camera to the center of the sighting.
+		// These don't depend on the target, so the camera may have calculated them
+		// already for every target the sighting's pipeline feeds.
+		double cameraBasedPitch = s.hasCameraBasedPitch() ? s.cameraBasedPitch() : model.getYAngle(centerY);
+		double cameraBasedYaw = s.hasCameraBasedYaw() ? s.cameraBasedYaw() : model.getXAngle(centerX);
 
-	/**
-	 * Calculates the relative aspect ratio of the sighting to the target. For
-	 * example, if the H:V aspect ratio of the target is 3:4 and the H:V aspect
-	 * ratio of the sighting is 1:2, the relative aspect ratio is (1/2)/(3/4), or
-	 * 2/3. Stores the result in the sightings.
-	 */
-	private void calculateRelativeAspectRatios() {
-		for (Sighting s : rawSightings) {
-			s.setRelativeAspectRatio(
-					CameraMath.calcRelativeAspectRatio(s.getAspectRatio(), visionTarget.getAspectRatio()));
-		}
-	}
+		// Distance along the floor from the camera, found from the height difference
+		// between the camera and the target
+		double cameraBasedDistance = model.calculateDistance(centerY, targetHeight);
 
-	/**
-	 * Calculates the horizontal rotation of the vision target relative to the
-	 * CVCamera. Usually unreliable. If your sighting has multiple pieces (for
-	 * example, two pieces of tape), consider calculating rotation using their
-	 * relative distances instead.
-	 */
-	private void calculateRotations() {
-		for (Sighting s : rawSightings) {
-			double relAspectRatio = s.getRelativeAspectRatio().getAsDouble();
-			s.setRobotBasedRotation(CameraMath.calcRobotBasedRotation(relAspectRatio));
-		}
+		// Adjusts for the placement of the camera on the robot using cartesian
+		// coordinates. Treats the camera as a point (horizontalOffset, -depthOffset),
+		// then calculates the distance and angle of the sighting relative to the
+		// origin (usually the center of the robot)
+		double x = model.getRobotX(centerX, cameraBasedDistance);
+		double y = model.getRobotY(centerX, cameraBasedDistance);
+		double robotBasedDistance = Math.sqrt(x * x + y * y);
+		double robotBasedYaw = CameraMath.calcRobotAngle(x, y);
+
+		// The relative aspect ratio of the sighting to the target. For example, if the
+		// H:V aspect ratio of the target is 3:4 and the H:V aspect ratio of the
+		// sighting is 1:2, the relative aspect ratio is (1/2)/(3/4), or 2/3.
+		double relativeAspectRatio = CameraMath.calcRelativeAspectRatio(s.getAspectRatio(), targetAspectRatio);
+
+		// The horizontal rotation of the vision target relative to the CVCamera.
+		// Usually unreliable. If your sighting has multiple pieces (for example, two
+		// pieces of tape), consider calculating rotation using their relative
+		// distances instead.
+		double robotBasedRotation = CameraMath.calcRobotBasedRotation(relativeAspectRatio);
+
+		s.setProcessedValues(cameraBasedPitch, cameraBasedYaw, cameraBasedDistance, robotBasedDistance,
+				robotBasedYaw, relativeAspectRatio, robotBasedRotation);
 	}
 
 	// DEPRECATED CODE
@@ -174,8 +259,8 @@ public class SightingContainer {
 		// DEPRECATED CODE, math should still work but is gross and inefficient
 		for (Sighting p : rawSightings) {
 			double angleFromCamera = Math.PI / 2.0
-					+ (p.getCameraBasedYaw().getAsDouble() - camera.getHorizontalAngle());
-			double cameraBasedDistance = p.getCameraBasedDistance().getAsDouble();
+					+ (p.cameraBasedYaw() - camera.getHorizontalAngle());
+			double cameraBasedDistance = p.cameraBasedDistance();
 			double robotBasedDistance = Math.sqrt(cameraBasedDistance * cameraBasedDistance
 					+ camera.getHorizontalOffset() * camera.getHorizontalOffset()
 					- 2.0 * cameraBasedDistance * camera.getHorizontalOffset() * Math.cos(angleFromCamera));
@@ -0,0 +1,204 @@
+package processing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An ordered series of predicates that filters a list of sightings in place.
+ * Each stage removes the sightings its predicate rejects before the next stage
+ * runs, so later stages only see sightings that passed every earlier one. <br/>
+ * Stages run cheapest first, by the relative cost given when they are added,
+ * so an expensive test is only run on sightings that cheap tests could not
+ * reject. Each stage counts how many sightings it tested and rejected, which
+ * shows which tests are doing the work. <br/>
+ * A chain can also hold a SightingFilterFunction, which runs before any of the
+ * predicates. This lets filters written for setPreProcessingFilter() and
+ * setPostProcessingFilter() keep working alongside predicates. <br/>
+ * Stages should be added before frames are processed.
+ * 
+ * @author Jeff
+ *
+ */
+public class SightingFilterChain implements SightingFilterFunction {
+	private final ArrayList<Stage> stages = new ArrayList<>(); // Sorted by cost, cheapest first
+	private SightingFilterFunction function = null; // Runs before the stages
+
+	/**
+	 * One predicate in a chain, along with its cost and counters
+	 */
+	public static final class Stage {
+		private final String name;
+		private final SightingPredicate predicate;
+		private final double cost;
+		private final AtomicLong tested = new AtomicLong(), rejected = new AtomicLong();
+
+		private Stage(String name, SightingPredicate predicate, double cost) {
+			this.name = name;
+			this.predicate = predicate;
+			this.cost = cost;
+		}
+
+		/**
+		 * Returns the name of this stage. Used for debugging.
+		 * 
+		 * @return the name given when the stage was added
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Returns the predicate this stage tests sightings with
+		 * 
+		 * @return the predicate
+		 */
+		public SightingPredicate getPredicate() {
+			return predicate;
+		}
+
+		/**
+		 * Returns the relative cost of this stage's predicate
+		 * 
+		 * @return the cost given when the stage was added
+		 */
+		public double getCost() {
+			return cost;
+		}
+
+		/**
+		 * Returns the number of sightings this stage has tested
+		 * 
+		 * @return the number of sightings tested since the counters were last reset
+		 */
+		public long getTestedCount() {
+			return tested.get();
+		}
+
+		/**
+		 * Returns the number of sightings this stage has rejected
+		 * 
+		 * @return the number of sightings rejected since the counters were last
+		 *         reset
+		 */
+		public long getRejectedCount() {
+			return rejected.get();
+		}
+
+		@Override
+		public String toString() {
+			return name + ": rejected " + rejected.get() + " of " + tested.get();
+		}
+	}
+
+	/**
+	 * Adds a predicate with the default cost of 1
+	 * 
+	 * @param name      the name of the stage, used for debugging
+	 * @param predicate the test each sighting must pass
+	 */
+	public void add(String name, SightingPredicate predicate) {
+		add(name, predicate, 1);
+	}
+
+	/**
+	 * Adds a predicate. Stages are kept in order of cost, and stages with the same
+	 * cost run in the order they were added.
+	 * 
+	 * @param name      the name of the stage, used for debugging
+	 * @param predicate the test each sighting must pass
+	 * @param cost      how expensive the predicate is compared to the chain's other
+	 *                  predicates. For example, a comparison of two fields might
+	 *                  cost 1 and a test that looks at every point of the sighting
+	 *                  might cost 100.
+	 */
+	public void add(String name, SightingPredicate predicate, double cost) {
+		int index = stages.size();
+		while (index > 0 && stages.get(index - 1).cost > cost)
+			index--;
+		stages.add(index, new Stage(name, predicate, cost));
+	}
+
+	/**
+	 * Sets a list-based filter that runs before any of the predicates, replacing
+	 * any that was set before. Unlike predicates, it may combine sightings.
+	 * 
+	 * @param function the filter, or null for none
+	 */
+	public void setFunction(SightingFilterFunction function) {
+		this.function = function;
+	}
+
+	/**
+	 * Returns the list-based filter that runs before the predicates
+	 * 
+	 * @return the filter, or null if there is none
+	 */
+	public SightingFilterFunction getFunction() {
+		return function;
+	}
+
+	/**
+	 * Returns the stages of this chain, in the order they run
+	 * 
+	 * @return a read-only list of the stages
+	 */
+	public List<Stage> getStages() {
+		return Collections.unmodifiableList(stages);
+	}
+
+	/**
+	 * Sets every stage's counters back to 0
+	 */
+	public void resetCounters() {
+		for (Stage stage : stages) {
+			stage.tested.set(0);
+			stage.rejected.set(0);
+		}
+	}
+
+	/**
+	 * Returns true if this chain has nothing to run
+	 * 
+	 * @return true if there are no stages and no list-based filter
+	 */
+	public boolean isEmpty() {
+		return stages.isEmpty() && function == null;
+	}
+
+	/**
+	 * Removes every sighting that fails a stage of this chain from the list. If
+	 * the chain has a list-based filter, it runs first and its result is filtered
+	 * instead.
+	 * 
+	 * @param rawSightings the sightings to filter. Modified in place unless there
+	 *                     is a list-based filter.
+	 * @return the filtered list; the same list that was passed in, unless there is
+	 *         a list-based filter
+	 */
+	@Override
+	public ArrayList<Sighting> filter(ArrayList<Sighting> rawSightings) {
+		ArrayList<Sighting> sightings = function == null ? rawSightings : function.filter(rawSightings);
+		for (Stage stage : stages) {
+			int count = sightings.size();
+			if (count == 0)
+				break;
+			int kept = 0;
+			for (int i = 0; i < count; i++) {
+				Sighting sighting = sightings.get(i);
+				if (stage.predicate.test(sighting))
+					sightings.set(kept++, sighting);
+			}
+			sightings.subList(kept, count).clear();
+			stage.tested.addAndGet(count);
+			stage.rejected.addAndGet(count - kept);
+		}
+		return sightings;
+	}
+
+	@Override
+	public String toString() {
+		return stages.toString();
+	}
+}
@@ -0,0 +1,296 @@
+package processing;
+
+import java.lang.invoke.VarHandle;
+import java.util.List;
+
+/**
+ * A fixed-size record of a target's recent frames, for finding where the
+ * target was at a given time. Each frame stores its time, its number of
+ * sightings, and the values of its primary sighting: the one closest to the
+ * robot. <br/>
+ * Frames are kept in a ring of preallocated primitive arrays, so memory use
+ * never grows, and once the ring is full each new frame replaces the oldest.
+ * Lookups binary search the frames by time and interpolate between the two
+ * frames around the requested time. <br/>
+ * One thread records frames while any number of threads look them up.
+ * lookup() never locks or allocates; a lookup that overlaps a frame being
+ * recorded simply retries.
+ * 
+ * @author Jeff
+ *
+ */
+public class SightingHistory {
+	private final int capacity;
+	private final long[] times; // When each frame was taken, from System.nanoTime()
+	private final int[] counts; // The number of sightings in each frame
+	// Values of each frame's primary sighting. NaN if the frame had none.
+	private final double[] distances, yaws, cameraYaws, cameraPitches, centerXs, centerYs;
+	private volatile long version = 0; // Odd while a frame is being recorded
+	private long recorded = 0; // The number of frames recorded. Frame k is in slot k % capacity.
+
+	/**
+	 * The state of a target at one point in time, as found by
+	 * SightingHistory.lookup(). Reused between lookups so that looking up values
+	 * doesn't allocate.
+	 */
+	public static final class Sample {
+		private long timeNanos;
+		private int sightingCount;
+		private double distance, yaw, cameraYaw, cameraPitch, centerX, centerY;
+
+		/**
+		 * Returns the time this sample describes
+		 * 
+		 * @return the time, from System.nanoTime()
+		 */
+		public long getTimeNanos() {
+			return timeNanos;
+		}
+
+		/**
+		 * Returns the number of sightings in the frame nearest to this sample's time
+		 * 
+		 * @return the number of sightings
+		 */
+		public int getSightingCount() {
+			return sightingCount;
+		}
+
+		/**
+		 * Returns whether there was a sighting at this sample's time
+		 * 
+		 * @return true if the values of this sample are meaningful
+		 */
+		public boolean hasSighting() {
+			return !Double.isNaN(centerX);
+		}
+
+		/**
+		 * Returns the robot-based distance of the primary sighting
+		 * 
+		 * @return the distance, or NaN if unknown
+		 */
+		public double getRobotBasedDistance() {
+			return distance;
+		}
+
+		/**
+		 * Returns the robot-based yaw of the primary sighting
+		 * 
+		 * @return the yaw in radians, or NaN if unknown
+		 */
+		public double getRobotBasedYaw() {
+			return yaw;
+		}
+
+		/**
+		 * Returns the camera-based yaw of the primary sighting
+		 * 
+		 * @return the yaw in radians, or NaN if unknown
+		 */
+		public double getCameraBasedYaw() {
+			return cameraYaw;
+		}
+
+		/**
+		 * Returns the camera-based pitch of the primary sighting
+		 * 
+		 * @return the pitch in radians, or NaN if unknown
+		 */
+		public double getCameraBasedPitch() {
+			return cameraPitch;
+		}
+
+		/**
+		 * Returns the x coordinate of the center of the primary sighting
+		 * 
+		 * @return the x coordinate in pixels, or NaN if there was no sighting
+		 */
+		public double getCenterX() {
+			return centerX;
+		}
+
+		/**
+		 * Returns the y coordinate of the center of the primary sighting
+		 * 
+		 * @return the y coordinate in pixels, or NaN if there was no sighting
+		 */
+		public double getCenterY() {
+			return centerY;
+		}
+	}
+
+	/**
+	 * Creates an empty history
+	 * 
+	 * @param capacity the number of frames to keep, at least 2
+	 */
+	public SightingHistory(int capacity) {
+		if (capacity < 2)
+			throw new IllegalArgumentException("A sighting history needs room for at least 2 frames");
+		this.capacity = capacity;
+		times = new long[capacity];
+		counts = new int[capacity];
+		distances = new double[capacity];
+		yaws = new double[capacity];
+		cameraYaws = new double[capacity];
+		cameraPitches = new double[capacity];
+		centerXs = new double[capacity];
+		centerYs = new double[capacity];
+	}
+
+	/**
+	 * Records a frame, replacing the oldest one if the history is full. Frames
+	 * must be recorded in order of time, by one thread.
+	 * 
+	 * @param timeNanos when the frame was taken, from System.nanoTime()
+	 * @param sightings the frame's processed sightings of the target
+	 */
+	public void record(long timeNanos, List<Sighting> sightings) {
+		Sighting primary = null;
+		for (Sighting sighting : sightings) {
+			if (primary == null || sighting.robotBasedDistance() < primary.robotBasedDistance()
+					|| (!primary.hasRobotBasedDistance() && sighting.hasRobotBasedDistance()))
+				primary = sighting;
+		}
+		int slot = (int) (recorded % capacity);
+		version++; // Odd: lookups of this slot must retry
+		VarHandle.storeStoreFence();
+		times[slot] = timeNanos;
+		counts[slot] = sightings.size();
+		distances[slot] = primary == null ? Double.NaN : primary.robotBasedDistance();
+		yaws[slot] = primary == null ? Double.NaN : primary.robotBasedYaw();
+		cameraYaws[slot] = primary == null ? Double.NaN : primary.cameraBasedYaw();
+		cameraPitches[slot] = primary == null ? Double.NaN : primary.cameraBasedPitch();
+		centerXs[slot] = primary == null ? Double.NaN : primary.getCenterX();
+		centerYs[slot] = primary == null ? Double.NaN : primary.getCenterY();
+		recorded++;
+		version++; // Even again: publishes the frame
+	}
+
+	/**
+	 * Finds the state of the target at a given time, interpolating linearly
+	 * between the frames before and after it. If only one of those frames had a
+	 * sighting, the values of the nearer frame are used. Times after the newest
+	 * frame get the newest frame's values.
+	 * 
+	 * @param timeNanos the time to look up, from System.nanoTime()
+	 * @param sample    the sample to store the result in
+	 * @return false if there are no frames at or before the time, in which case
+	 *         the sample is not changed
+	 */
+	public boolean lookup(long timeNanos, Sample sample) {
+		while (true) {
+			long before = version;
+			if ((before & 1) != 0) {
+				Thread.onSpinWait();
+				continue;
+			}
+			boolean found = read(timeNanos, sample);
+			VarHandle.acquireFence(); // Finish reading the arrays before checking the version again
+			if (version == before)
+				return found;
+		}
+	}
+
+	/**
+	 * Returns the robot-based distance of the target at a given time. See
+	 * lookup(), which should be used instead to avoid allocating.
+	 * 
+	 * @param timeNanos the time to look up, from System.nanoTime()
+	 * @return the interpolated distance, or NaN if unknown
+	 */
+	public double getRobotBasedDistanceAt(long timeNanos) {
+		Sample sample = new Sample();
+		return lookup(timeNanos, sample) ? sample.distance : Double.NaN;
+	}
+
+	/**
+	 * Returns the robot-based yaw of the target at a given time. See lookup(),
+	 * which should be used instead to avoid allocating.
+	 * 
+	 * @param timeNanos the time to look up, from System.nanoTime()
+	 * @return the interpolated yaw in radians, or NaN if unknown
+	 */
+	public double getRobotBasedYawAt(long timeNanos) {
+		Sample sample = new Sample();
+		return lookup(timeNanos, sample) ? sample.yaw : Double.NaN;
+	}
+
+	/**
+	 * Returns the number of frames currently stored
+	 * 
+	 * @return the number of frames, at most the capacity
+	 */
+	public int size() {
+		while (true) {
+			long before = version;
+			if ((before & 1) != 0) {
+				Thread.onSpinWait();
+				continue;
+			}
+			long end = recorded; // A long may be read in two halves, so it is checked like the arrays
+			VarHandle.acquireFence();
+			if (version == before)
+				return (int) Math.min(end, capacity);
+		}
+	}
+
+	/**
+	 * Returns the greatest number of frames this history stores
+	 * 
+	 * @return the capacity
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Reads the frames around a time without checking for a concurrent write
+	 */
+	private boolean read(long timeNanos, Sample sample) {
+		long end = recorded, start = Math.max(0, end - capacity);
+		if (end == 0 || times[(int) (start % capacity)] > timeNanos)
+			return false;
+		// Binary search for the last frame at or before the time
+		long low = start, high = end - 1;
+		while (low < high) {
+			long middle = (low + high + 1) >>> 1;
+			if (times[(int) (middle % capacity)] <= timeNanos)
+				low = middle;
+			else
+				high = middle - 1;
+		}
+		int a = (int) (low % capacity);
+		sample.timeNanos = timeNanos;
+		if (low == end - 1) {
+			copy(a, sample);
+			return true;
+		}
+		int b = (int) ((low + 1) % capacity);
+		double t = (double) (timeNanos - times[a]) / (times[b] - times[a]);
+		sample.sightingCount = t < 0.5 ? counts[a] : counts[b];
+		if (Double.isNaN(centerXs[a]) || Double.isNaN(centerXs[b])) {
+			copy(t < 0.5 ? a : b, sample);
+			sample.timeNanos = timeNanos;
+			return true;
+		}
+		sample.distance = distances[a] + (distances[b] - distances[a]) * t;
+		sample.yaw = yaws[a] + Math.IEEEremainder(yaws[b] - yaws[a], 2 * Math.PI) * t;
+		sample.cameraYaw = cameraYaws[a] + (cameraYaws[b] - cameraYaws[a]) * t;
+		sample.cameraPitch = cameraPitches[a] + (cameraPitches[b] - cameraPitches[a]) * t;
+		sample.centerX = centerXs[a] + (centerXs[b] - centerXs[a]) * t;
+		sample.centerY = centerYs[a] + (centerYs[b] - centerYs[a]) * t;
+		return true;
+	}
+
+	private void copy(int slot, Sample sample) {
+		sample.sightingCount = counts[slot];
+		sample.distance = distances[slot];
+		sample.yaw = yaws[slot];
+		sample.cameraYaw = cameraYaws[slot];
+		sample.cameraPitch = cameraPitches[slot];
+		sample.centerX = centerXs[slot];
+		sample.centerY = centerYs[slot];
+	}
+}
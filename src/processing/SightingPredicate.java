@@ -0,0 +1,52 @@
+package processing;
+
+/**
+ * A test that decides whether a single sighting is valid. Unlike
+ * SightingFilterFunction, a predicate looks at one sighting at a time, so
+ * predicates can be combined, reordered, and applied to a list in place
+ * without building a new list each frame (see SightingFilterChain).
+ * 
+ * @author Jeff
+ */
+@FunctionalInterface
+public interface SightingPredicate {
+	/**
+	 * Decides whether a sighting is valid
+	 * 
+	 * @param sighting the sighting to test
+	 * @return true to keep the sighting, false to reject it
+	 */
+	public boolean test(Sighting sighting);
+
+	/**
+	 * Combines this predicate with another, keeping only sightings that pass
+	 * both. The other predicate is not tested if this one rejects the sighting.
+	 * 
+	 * @param other the predicate to combine with this one
+	 * @return a predicate that passes when both predicates pass
+	 */
+	public default SightingPredicate and(SightingPredicate other) {
+		return sighting -> test(sighting) && other.test(sighting);
+	}
+
+	/**
+	 * Combines this predicate with another, keeping sightings that pass either.
+	 * The other predicate is not tested if this one accepts the sighting.
+	 * 
+	 * @param other the predicate to combine with this one
+	 * @return a predicate that passes when either predicate passes
+	 */
+	public default SightingPredicate or(SightingPredicate other) {
+		return sighting -> test(sighting) || other.test(sighting);
+	}
+
+	/**
+	 * Returns a predicate that rejects the sightings this one accepts, and
+	 * accepts the ones it rejects
+	 * 
+	 * @return the opposite of this predicate
+	 */
+	public default SightingPredicate negate() {
+		return sighting -> !test(sighting);
+	}
+}
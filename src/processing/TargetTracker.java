@@ -0,0 +1,210 @@
+package processing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import math.ConstantVelocityKalmanFilter;
+
+/**
+ * Follows the sightings of a target from frame to frame as tracks with stable
+ * IDs. Each frame, every track's filtered distance and yaw are predicted
+ * forward to the frame's time, and each sighting is matched to the nearest
+ * predicted track within a gate. Sightings that match no track start new
+ * tracks, and tracks that go unmatched for too many frames in a row are
+ * dropped. <br/>
+ * Matching is greedy: the closest sighting-track pair within the gate is
+ * matched first, then the closest remaining pair, and so on. The robot-based
+ * distance and yaw of each track are smoothed with separate constant-velocity
+ * Kalman filters (see ConstantVelocityKalmanFilter), so tracks also carry
+ * velocities that can predict where a target will be between frames. <br/>
+ * Sightings without a robot-based distance and yaw are not tracked. A tracker
+ * should only be updated by one thread; the tracks it returns are immutable
+ * and may be read anywhere.
+ * 
+ * @author Jeff
+ *
+ */
+public class TargetTracker {
+	private final double distanceGate, yawGate; // How far a sighting may be from a prediction and still match
+	private final int maxMissedFrames;
+	private final double distanceNoise, yawNoise; // Standard deviation of measurements
+	private final double distanceAcceleration, yawAcceleration; // Standard deviation of changes in velocity
+
+	private final ArrayList<TrackState> states = new ArrayList<>(); // Live tracks, oldest first
+	private long nextId = 1;
+
+	// Working arrays, grown as needed and reused between frames
+	private long[] candidates = new long[16]; // Cost, track and sighting of each pair within the gate
+	private boolean[] trackMatched = new boolean[0], sightingMatched = new boolean[0];
+
+	/**
+	 * The filters and bookkeeping of one live track
+	 */
+	private static class TrackState {
+		final long id;
+		final ConstantVelocityKalmanFilter distance, yaw;
+		int age = 0, missedFrames = 0;
+		long timeNanos;
+		Sighting sighting; // Matched this frame, or null
+
+		TrackState(long id, ConstantVelocityKalmanFilter distance, ConstantVelocityKalmanFilter yaw,
+				long timeNanos, Sighting sighting) {
+			this.id = id;
+			this.distance = distance;
+			this.yaw = yaw;
+			this.timeNanos = timeNanos;
+			this.sighting = sighting;
+		}
+	}
+
+	/**
+	 * Creates a tracker, deriving filter noise from the gates: measurements are
+	 * assumed to be accurate to within a quarter of the gate, and velocities to
+	 * change by up to one gate per second each second.
+	 * 
+	 * @param distanceGate    the furthest a sighting's distance may be from a
+	 *                        track's predicted distance to match it
+	 * @param yawGate         the furthest a sighting's yaw may be from a track's
+	 *                        predicted yaw to match it, in radians
+	 * @param maxMissedFrames the number of frames in a row a track may go unseen
+	 *                        before it is dropped
+	 */
+	public TargetTracker(double distanceGate, double yawGate, int maxMissedFrames) {
+		this(distanceGate, yawGate, maxMissedFrames, distanceGate / 4, yawGate / 4, distanceGate, yawGate);
+	}
+
+	/**
+	 * Creates a tracker
+	 * 
+	 * @param distanceGate         the furthest a sighting's distance may be from a
+	 *                             track's predicted distance to match it
+	 * @param yawGate              the furthest a sighting's yaw may be from a
+	 *                             track's predicted yaw to match it, in radians
+	 * @param maxMissedFrames      the number of frames in a row a track may go
+	 *                             unseen before it is dropped
+	 * @param distanceNoise        the standard deviation of measured distances
+	 * @param yawNoise             the standard deviation of measured yaws, in
+	 *                             radians
+	 * @param distanceAcceleration the standard deviation of the change in distance
+	 *                             velocity, per second squared
+	 * @param yawAcceleration      the standard deviation of the change in yaw
+	 *                             velocity, in radians per second squared
+	 */
+	public TargetTracker(double distanceGate, double yawGate, int maxMissedFrames, double distanceNoise,
+			double yawNoise, double distanceAcceleration, double yawAcceleration) {
+		this.distanceGate = distanceGate;
+		this.yawGate = yawGate;
+		this.maxMissedFrames = maxMissedFrames;
+		this.distanceNoise = distanceNoise;
+		this.yawNoise = yawNoise;
+		this.distanceAcceleration = distanceAcceleration;
+		this.yawAcceleration = yawAcceleration;
+	}
+
+	/**
+	 * Matches a frame's sightings to the tracks and updates them
+	 * 
+	 * @param sightings the processed sightings of the target in this frame
+	 * @param timeNanos when the frame was taken, from System.nanoTime()
+	 * @return a read-only list of the tracks after this frame, oldest first,
+	 *         including tracks that were not seen but have not been dropped
+	 */
+	public List<Track> update(List<Sighting> sightings, long timeNanos) {
+		int trackCount = states.size(), sightingCount = Math.min(sightings.size(), 1 << 16);
+		if (trackMatched.length < trackCount)
+			trackMatched = new boolean[Math.max(trackCount, trackMatched.length * 2)];
+		if (sightingMatched.length < sightingCount)
+			sightingMatched = new boolean[Math.max(sightingCount, sightingMatched.length * 2)];
+		Arrays.fill(trackMatched, 0, trackCount, false);
+		Arrays.fill(sightingMatched, 0, sightingCount, false);
+
+		// Predict every track forward to this frame
+		for (TrackState state : states) {
+			double dt = (timeNanos - state.timeNanos) / 1e9;
+			state.distance.predict(dt);
+			state.yaw.predict(dt);
+			state.timeNanos = timeNanos;
+			state.sighting = null;
+		}
+
+		// Find every sighting-track pair within the gate. Each is packed into a long
+		// with the cost in the high bits, so sorting the longs sorts by cost.
+		int candidateCount = 0;
+		for (int t = 0; t < trackCount && t < 1 << 16; t++) {
+			TrackState state = states.get(t);
+			for (int s = 0; s < sightingCount; s++) {
+				Sighting sighting = sightings.get(s);
+				double distanceError = (sighting.robotBasedDistance() - state.distance.getValue()) / distanceGate;
+				double yawError = angleDifference(sighting.robotBasedYaw(), state.yaw.getValue()) / yawGate;
+				double cost = distanceError * distanceError + yawError * yawError;
+				if (!(cost <= 1))
+					continue; // Outside the gate, or the sighting has no distance or yaw
+				if (candidateCount == candidates.length)
+					candidates = Arrays.copyOf(candidates, candidateCount * 2);
+				candidates[candidateCount++] = ((long) Float.floatToIntBits((float) cost) << 32) | ((long) t << 16) | s;
+			}
+		}
+		Arrays.sort(candidates, 0, candidateCount);
+
+		// Match the closest pairs first
+		for (int i = 0; i < candidateCount; i++) {
+			int t = (int) (candidates[i] >>> 16) & 0xFFFF, s = (int) candidates[i] & 0xFFFF;
+			if (trackMatched[t] || sightingMatched[s])
+				continue;
+			trackMatched[t] = true;
+			sightingMatched[s] = true;
+			TrackState state = states.get(t);
+			Sighting sighting = sightings.get(s);
+			state.distance.update(sighting.robotBasedDistance());
+			// Measure yaw relative to the estimate so it never jumps a full turn
+			state.yaw.update(state.yaw.getValue() + angleDifference(sighting.robotBasedYaw(), state.yaw.getValue()));
+			state.sighting = sighting;
+		}
+
+		// Age the tracks that were already live, dropping those missed for too long
+		int kept = 0;
+		for (int t = 0; t < trackCount; t++) {
+			TrackState state = states.get(t);
+			state.age++;
+			state.missedFrames = trackMatched[t] ? 0 : state.missedFrames + 1;
+			if (state.missedFrames <= maxMissedFrames)
+				states.set(kept++, state);
+		}
+		states.subList(kept, trackCount).clear();
+
+		// Start a track for each unmatched sighting
+		for (int s = 0; s < sightingCount; s++) {
+			Sighting sighting = sightings.get(s);
+			if (sightingMatched[s] || !sighting.hasRobotBasedDistance() || !sighting.hasRobotBasedYaw())
+				continue;
+			states.add(new TrackState(nextId++,
+					new ConstantVelocityKalmanFilter(sighting.robotBasedDistance(), distanceNoise,
+							distanceAcceleration, distanceGate),
+					new ConstantVelocityKalmanFilter(sighting.robotBasedYaw(), yawNoise, yawAcceleration, yawGate),
+					timeNanos, sighting));
+		}
+
+		ArrayList<Track> tracks = new ArrayList<>(states.size());
+		for (TrackState state : states) {
+			tracks.add(new Track(state.id, state.age, state.missedFrames, state.timeNanos, state.distance.getValue(),
+					state.distance.getVelocity(), state.yaw.getValue(), state.yaw.getVelocity(), state.sighting));
+		}
+		return Collections.unmodifiableList(tracks);
+	}
+
+	/**
+	 * Drops every track. IDs keep counting up from where they were.
+	 */
+	public void reset() {
+		states.clear();
+	}
+
+	/**
+	 * Returns the difference between two angles, wrapped to [-pi, pi]
+	 */
+	private static double angleDifference(double a, double b) {
+		return Math.IEEEremainder(a - b, 2 * Math.PI);
+	}
+}
@@ -0,0 +1,171 @@
+package processing;
+
+/**
+ * One physical target followed across frames by a TargetTracker, as it stood
+ * when a frame was published. Tracks are immutable; each frame publishes new
+ * ones. A track's ID stays the same from frame to frame for as long as the
+ * tracker keeps finding it, so it can be used to tell whether this frame's
+ * target is the same one as last frame's. <br/>
+ * The distance and yaw are filtered estimates, not raw measurements, and come
+ * with velocities that can be used to predict where the target will be.
+ * 
+ * @author Jeff
+ *
+ */
+public final class Track {
+	private final long id;
+	private final int age, missedFrames;
+	private final long timeNanos;
+	private final double distance, distanceVelocity, yaw, yawVelocity;
+	private final Sighting sighting;
+
+	/**
+	 * Creates a track record
+	 * 
+	 * @param id               the track's ID
+	 * @param age              the number of frames since the track was started
+	 * @param missedFrames     the number of frames in a row the track has not been
+	 *                         seen in
+	 * @param timeNanos        when the estimate applies, from System.nanoTime()
+	 * @param distance         the estimated robot-based distance
+	 * @param distanceVelocity the estimated rate of change of distance, per second
+	 * @param yaw              the estimated robot-based yaw, in radians
+	 * @param yawVelocity      the estimated rate of change of yaw, in radians per
+	 *                         second
+	 * @param sighting         the sighting matched to the track in this frame, or
+	 *                         null if it was not seen
+	 */
+	Track(long id, int age, int missedFrames, long timeNanos, double distance, double distanceVelocity, double yaw,
+			double yawVelocity, Sighting sighting) {
+		this.id = id;
+		this.age = age;
+		this.missedFrames = missedFrames;
+		this.timeNanos = timeNanos;
+		this.distance = distance;
+		this.distanceVelocity = distanceVelocity;
+		this.yaw = yaw;
+		this.yawVelocity = yawVelocity;
+		this.sighting = sighting;
+	}
+
+	/**
+	 * Returns the ID of this track, which is unique among the tracks of a tracker
+	 * and never changes
+	 * 
+	 * @return the track ID
+	 */
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * Returns the number of frames since this track was started. A new track has
+	 * an age of 0.
+	 * 
+	 * @return the age, in frames
+	 */
+	public int getAge() {
+		return age;
+	}
+
+	/**
+	 * Returns the number of frames in a row this track has not been seen in. The
+	 * estimate of a missed track is a prediction from its last sighting.
+	 * 
+	 * @return the number of missed frames, 0 if it was seen in this frame
+	 */
+	public int getMissedFrames() {
+		return missedFrames;
+	}
+
+	/**
+	 * Returns whether this track was matched to a sighting in this frame
+	 * 
+	 * @return true if the track was seen
+	 */
+	public boolean isVisible() {
+		return sighting != null;
+	}
+
+	/**
+	 * Returns the sighting matched to this track in this frame
+	 * 
+	 * @return the sighting, or null if the track was not seen in this frame
+	 */
+	public Sighting getSighting() {
+		return sighting;
+	}
+
+	/**
+	 * Returns when this track's estimate applies
+	 * 
+	 * @return the time, from System.nanoTime()
+	 */
+	public long getTimeNanos() {
+		return timeNanos;
+	}
+
+	/**
+	 * Returns the filtered distance from the center of the robot to the target
+	 * 
+	 * @return the distance, in the units of the target's height
+	 */
+	public double getDistance() {
+		return distance;
+	}
+
+	/**
+	 * Returns the rate at which the distance to the target is changing
+	 * 
+	 * @return the distance velocity, per second. Negative if getting closer.
+	 */
+	public double getDistanceVelocity() {
+		return distanceVelocity;
+	}
+
+	/**
+	 * Returns the filtered yaw of the target relative to the center of the robot
+	 * 
+	 * @return the yaw, in radians
+	 */
+	public double getYaw() {
+		return yaw;
+	}
+
+	/**
+	 * Returns the rate at which the yaw of the target is changing
+	 * 
+	 * @return the yaw velocity, in radians per second
+	 */
+	public double getYawVelocity() {
+		return yawVelocity;
+	}
+
+	/**
+	 * Predicts the distance to the target at a given time, assuming its velocity
+	 * stays constant
+	 * 
+	 * @param timeNanos the time to predict for, from System.nanoTime()
+	 * @return the predicted distance
+	 */
+	public double predictDistance(long timeNanos) {
+		return distance + distanceVelocity * (timeNanos - this.timeNanos) / 1e9;
+	}
+
+	/**
+	 * Predicts the yaw of the target at a given time, assuming its velocity stays
+	 * constant
+	 * 
+	 * @param timeNanos the time to predict for, from System.nanoTime()
+	 * @return the predicted yaw, in radians
+	 */
+	public double predictYaw(long timeNanos) {
+		return yaw + yawVelocity * (timeNanos - this.timeNanos) / 1e9;
+	}
+
+	@Override
+	public String toString() {
+		return "Track " + id + " [distance=" + distance + ", yaw=" + yaw + ", age=" + age + ", missed=" + missedFrames
+				+ "]";
+	}
+}
@@ -22,7 +22,18 @@ public class VisionTarget {
 	private String name;
 	// Used to filter the sightings of this target before and after processing has
 	// been completed
-	private SightingFilterFunction preProcessingFilter = null, postProcessingFilter = null;
+	private final SightingFilterChain preProcessingFilters = new SightingFilterChain(),
+			postProcessingFilters = new SightingFilterChain();
+	// Sightings closer than this, in pixels, are combined before filtering. 0 to never combine.
+	private double mergeDistance = 0;
+	// Settings for the trackers that follow this target's sightings between frames.
+	// Cameras may check tracking from another thread, so it is written last.
+	private volatile boolean tracking = false;
+	private double distanceGate, yawGate;
+	private int maxMissedFrames;
+	private double distanceNoise, yawNoise, distanceAcceleration, yawAcceleration;
+	// The number of frames of history to keep for each camera. 0 for none.
+	private volatile int historyLength = 0;
 
 	/**
 	 * Instantiates the vision target with a given debugging name and set of
@@ -47,17 +58,21 @@ public class VisionTarget {
 	 * This filter can additionally be used to combine sightings (see
 	 * Sighting.addSighting()) which belong to the same real-world target instance
 	 * (for example, a vision target consisting of multiple discrete pieces of
-	 * reflective tape). <br/>
+	 * reflective tape). If the pieces are simply close together, setMergeDistance()
+	 * does this before the filter runs. <br/>
 	 * <br/>
 	 * Note: Raw sightings DO NOT have values for non-pixel-based properties such as
 	 * distance or angle. This filter should not utilize those values. If filtering
-	 * based on such values is required, use setPostProcessingFilter()
+	 * based on such values is required, use setPostProcessingFilter() <br/>
+	 * To only remove invalid sightings, addPreProcessingPredicate() avoids
+	 * building a new list every frame. This filter runs before any such
+	 * predicates.
 	 * 
 	 * @param filter a method which takes an ArrayList of sightings and returns only
 	 *               the ones deemed valid
 	 */
 	public void setPreProcessingFilter(SightingFilterFunction filter) {
-		this.preProcessingFilter = filter;
+		preProcessingFilters.setFunction(filter);
 	}
 
 	/**
@@ -69,14 +84,227 @@ public class VisionTarget {
 	 * <br/>
 	 * Note: This method is run after processing. Depending on camera and pipeline
 	 * setup, using setPreProcessingFilter() except where processed values are
-	 * explicitly needed can reduce processing load.
+	 * explicitly needed can reduce processing load. <br/>
+	 * addPostProcessingPredicate() avoids building a new list every frame. This
+	 * filter runs before any such predicates.
 	 * 
 	 * @param filter a method which takes an ArrayList of sightings and returns only
 	 *               the ones deemed valid
 	 */
 
 	public void setPostProcessingFilter(SightingFilterFunction filter) {
-		this.postProcessingFilter = filter;
+		postProcessingFilters.setFunction(filter);
+	}
+
+	/**
+	 * Adds a test that every raw sighting of this target must pass. Sightings that
+	 * fail are removed in place, before processing. Like the pre-processing
+	 * filter, the test should only use pixel-based values. <br/>
+	 * Tests run cheapest first (see SightingFilterChain), and each counts the
+	 * sightings it rejects (see getPreProcessingFilters()).
+	 * 
+	 * @param name      the name of the test, used for debugging
+	 * @param predicate the test
+	 * @param cost      how expensive the test is compared to the target's other
+	 *                  pre-processing tests
+	 */
+	public void addPreProcessingPredicate(String name, SightingPredicate predicate, double cost) {
+		preProcessingFilters.add(name, predicate, cost);
+	}
+
+	/**
+	 * Adds a test that every raw sighting of this target must pass, with the
+	 * default cost of 1. See addPreProcessingPredicate(String, SightingPredicate,
+	 * double).
+	 * 
+	 * @param name      the name of the test, used for debugging
+	 * @param predicate the test
+	 */
+	public void addPreProcessingPredicate(String name, SightingPredicate predicate) {
+		preProcessingFilters.add(name, predicate);
+	}
+
+	/**
+	 * Adds a test that every processed sighting of this target must pass.
+	 * Sightings that fail are removed in place. The test may use processed values
+	 * such as distance and angles. <br/>
+	 * Tests run cheapest first (see SightingFilterChain), and each counts the
+	 * sightings it rejects (see getPostProcessingFilters()).
+	 * 
+	 * @param name      the name of the test, used for debugging
+	 * @param predicate the test
+	 * @param cost      how expensive the test is compared to the target's other
+	 *                  post-processing tests
+	 */
+	public void addPostProcessingPredicate(String name, SightingPredicate predicate, double cost) {
+		postProcessingFilters.add(name, predicate, cost);
+	}
+
+	/**
+	 * Adds a test that every processed sighting of this target must pass, with
+	 * the default cost of 1. See addPostProcessingPredicate(String,
+	 * SightingPredicate, double).
+	 * 
+	 * @param name      the name of the test, used for debugging
+	 * @param predicate the test
+	 */
+	public void addPostProcessingPredicate(String name, SightingPredicate predicate) {
+		postProcessingFilters.add(name, predicate);
+	}
+
+	/**
+	 * Returns the filters run on raw sightings of this target, including their
+	 * rejection counters
+	 * 
+	 * @return the pre-processing filter chain
+	 */
+	public SightingFilterChain getPreProcessingFilters() {
+		return preProcessingFilters;
+	}
+
+	/**
+	 * Returns the filters run on processed sightings of this target, including
+	 * their rejection counters
+	 * 
+	 * @return the post-processing filter chain
+	 */
+	public SightingFilterChain getPostProcessingFilters() {
+		return postProcessingFilters;
+	}
+
+	/**
+	 * Sets how close sightings of this target must be to be combined into one.
+	 * Sightings within this distance of each other, directly or through other
+	 * sightings, are combined (see Sighting.addSighting()) before the
+	 * pre-processing filter runs. Useful when one physical target is found as
+	 * several pieces, for example tape broken up by glare. <br/>
+	 * Distances are measured between the sightings' outlines (see
+	 * Sighting.distanceTo()). Defaults to 0, which never combines sightings.
+	 * 
+	 * @param pixels the merge distance, in pixels
+	 */
+	public void setMergeDistance(double pixels) {
+		this.mergeDistance = pixels;
+	}
+
+	/**
+	 * Returns how close sightings of this target must be to be combined into one
+	 * 
+	 * @return the merge distance, in pixels. 0 if sightings are never combined.
+	 */
+	public double getMergeDistance() {
+		return mergeDistance;
+	}
+
+	/**
+	 * Turns on tracking for this target. Each camera then follows this target's
+	 * processed sightings from frame to frame as tracks with stable IDs and
+	 * filtered distances and yaws (see TargetTracker). Tracks are available from
+	 * FrameSnapshot.getTracks(). Filter noise is derived from the gates (see
+	 * TargetTracker). <br/>
+	 * May be called at any time; cameras start tracking the target from their
+	 * next frame. Calling it again does not change trackers that already exist.
+	 * 
+	 * @param distanceGate    the furthest a sighting's robot-based distance may be
+	 *                        from a track's predicted distance and still belong
+	 *                        to that track
+	 * @param yawGate         the furthest a sighting's robot-based yaw may be from
+	 *                        a track's predicted yaw and still belong to that
+	 *                        track, in radians
+	 * @param maxMissedFrames the number of frames in a row a track may go unseen
+	 *                        before it is dropped
+	 */
+	public void enableTracking(double distanceGate, double yawGate, int maxMissedFrames) {
+		enableTracking(distanceGate, yawGate, maxMissedFrames, distanceGate / 4, yawGate / 4, distanceGate, yawGate);
+	}
+
+	/**
+	 * Turns on tracking for this target, with explicit filter noise. See
+	 * enableTracking(double, double, int). Lower noise values give smoother
+	 * tracks that respond more slowly to real changes.
+	 * 
+	 * @param distanceGate         the furthest a sighting's robot-based distance
+	 *                             may be from a track's predicted distance and
+	 *                             still belong to that track
+	 * @param yawGate              the furthest a sighting's robot-based yaw may be
+	 *                             from a track's predicted yaw and still belong to
+	 *                             that track, in radians
+	 * @param maxMissedFrames      the number of frames in a row a track may go
+	 *                             unseen before it is dropped
+	 * @param distanceNoise        the standard deviation of measured distances
+	 * @param yawNoise             the standard deviation of measured yaws, in
+	 *                             radians
+	 * @param distanceAcceleration the standard deviation of the change in distance
+	 *                             velocity, per second squared
+	 * @param yawAcceleration      the standard deviation of the change in yaw
+	 *                             velocity, in radians per second squared
+	 */
+	public void enableTracking(double distanceGate, double yawGate, int maxMissedFrames, double distanceNoise,
+			double yawNoise, double distanceAcceleration, double yawAcceleration) {
+		this.distanceGate = distanceGate;
+		this.yawGate = yawGate;
+		this.maxMissedFrames = maxMissedFrames;
+		this.distanceNoise = distanceNoise;
+		this.yawNoise = yawNoise;
+		this.distanceAcceleration = distanceAcceleration;
+		this.yawAcceleration = yawAcceleration;
+		this.tracking = true;
+	}
+
+	/**
+	 * Returns whether sightings of this target are tracked between frames
+	 * 
+	 * @return true if enableTracking() has been called
+	 */
+	public boolean isTrackingEnabled() {
+		return tracking;
+	}
+
+	/**
+	 * Returns whether a history of this target's recent frames is kept
+	 * 
+	 * @return true if enableHistory() has been called
+	 */
+	public boolean isHistoryEnabled() {
+		return historyLength != 0;
+	}
+
+	/**
+	 * Creates a tracker with this target's tracking settings. Each camera-target
+	 * pair has its own.
+	 * 
+	 * @return a new tracker, or null if tracking is not enabled
+	 */
+	TargetTracker createTracker() {
+		return tracking ? new TargetTracker(distanceGate, yawGate, maxMissedFrames, distanceNoise, yawNoise,
+				distanceAcceleration, yawAcceleration) : null;
+	}
+
+	/**
+	 * Keeps a history of this target's recent frames for each camera, so robot
+	 * code can find where the target was at a given time (see SightingHistory and
+	 * CVCamera.getHistory()). Memory use is fixed by the number of frames kept.
+	 * <br/>
+	 * May be called at any time; cameras start recording the target from their
+	 * next frame. Calling it again does not resize histories that already exist.
+	 * 
+	 * @param frames the number of frames to keep, at least 2. For example, 2
+	 *               seconds of history at 30 frames per second is 60 frames.
+	 */
+	public void enableHistory(int frames) {
+		if (frames < 2)
+			throw new IllegalArgumentException("A sighting history needs room for at least 2 frames");
+		this.historyLength = frames;
+	}
+
+	/**
+	 * Creates a history with this target's history length. Each camera-target
+	 * pair has its own.
+	 * 
+	 * @return a new history, or null if history is not enabled
+	 */
+	SightingHistory createHistory() {
+		return historyLength == 0 ? null : new SightingHistory(historyLength);
 	}
 
 	/**
@@ -87,14 +315,14 @@ public class VisionTarget {
 	 * as raw sightings do not have them set yet. For filtering based on distance,
 	 * angle, etc..., see validateProcessedSightings()
 	 * 
-	 * @param polys the sightings to evaluate.
+	 * @param polys the sightings to evaluate. May be modified.
 	 * @return only the valid sightings
 	 */
 	protected ArrayList<Sighting> validateRawSightings(ArrayList<Sighting> polys) {
-		if (preProcessingFilter == null) {
+		if (preProcessingFilters.isEmpty()) {
 			return polys;
 		} else {
-			return preProcessingFilter.filter(polys);
+			return preProcessingFilters.filter(polys);
 		}
 	}
 
@@ -105,14 +333,14 @@ public class VisionTarget {
 	 * filtering that does not require OptionalDouble components of sighting, see
 	 * validateRawSightings().
 	 * 
-	 * @param polys the sightings to evaluate.
+	 * @param polys the sightings to evaluate. May be modified.
 	 * @return only the valid sightings
 	 */
 	protected ArrayList<Sighting> validateProcessedSightings(ArrayList<Sighting> polys) {
-		if (postProcessingFilter == null) {
+		if (postProcessingFilters.isEmpty()) {
 			return polys;
 		} else {
-			return postProcessingFilter.filter(polys);
+			return postProcessingFilters.filter(polys);
 		}
 	}
 